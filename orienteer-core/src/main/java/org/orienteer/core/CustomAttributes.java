@@ -1,5 +1,6 @@
 package org.orienteer.core;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -26,6 +27,14 @@ public enum CustomAttributes
 	 * Script to calculate value of the property
 	 */
 	CALC_SCRIPT("orienteer.script", OType.STRING, null, true),
+	/**
+	 * Is this calculable property should be calculated only on demand
+	 */
+	CALC_LAZY("orienteer.calc.lazy", OType.BOOLEAN, false, false),
+	/**
+	 * Is value of this calculable property should be stored in a document and recalculated only on changes
+	 */
+	CALC_MATERIALIZED("orienteer.calc.materialized", OType.BOOLEAN, false, false),
 	/**
 	 * Is this property displayable or not
 	 */
@@ -59,6 +68,10 @@ public enum CustomAttributes
 	 * Name of a visualization that should be used for property visualization
 	 */
 	VISUALIZATION_TYPE("orienteer.visualization", OType.STRING, "default", false),
+	/**
+	 * Is this property should be indexed for full-text search
+	 */
+	SEARCHABLE("orienteer.searchable", OType.BOOLEAN, false, false),
 	/**
 	 * Link to an inverse property in respect to this one
 	 */
@@ -92,7 +105,17 @@ public enum CustomAttributes
 	private final Class<?> javaClass;
 	private final boolean encode;
 	
-	private static final Map<String, CustomAttributes> QUICK_CACHE = new HashMap<String, CustomAttributes>();
+	private static final Map<String, CustomAttributes> BY_NAME;
+	
+	static
+	{
+		Map<String, CustomAttributes> byName = new HashMap<String, CustomAttributes>();
+		for (CustomAttributes customAttribute : values())
+		{
+			byName.put(customAttribute.getName(), customAttribute);
+		}
+		BY_NAME = Collections.unmodifiableMap(byName);
+	}
 	
 	private CustomAttributes(String name, OType type, Object defaultValue, boolean encode)
 	{
@@ -135,19 +158,7 @@ public enum CustomAttributes
 
 	public static CustomAttributes fromString(String name)
 	{
-		if(name==null) return null;
-		if(QUICK_CACHE.containsKey(name)) return QUICK_CACHE.get(name);
-		else
-		{
-			for (CustomAttributes customAttribute : values()) {
-				if(customAttribute.getName().equals(name))
-				{
-					QUICK_CACHE.put(name, customAttribute);
-					return customAttribute;
-				}
-			}
-			return null;
-		}
+		return name!=null?BY_NAME.get(name):null;
 	}
 	
 	@SuppressWarnings("unchecked")
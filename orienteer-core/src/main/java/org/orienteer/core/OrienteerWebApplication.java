@@ -22,6 +22,7 @@ import org.orienteer.core.component.meta.WicketPropertyResolver;
 import org.orienteer.core.component.visualizer.UIVisualizersRegistry;
 import org.orienteer.core.hook.CalculablePropertiesHook;
 import org.orienteer.core.hook.CallbackHook;
+import org.orienteer.core.hook.MaterializationQueue;
 import org.orienteer.core.hook.ReferencesConsistencyHook;
 import org.orienteer.core.module.IOrienteerModule;
 import org.orienteer.core.module.ModuledDataInstallator;
@@ -29,7 +30,10 @@ import org.orienteer.core.module.OWidgetsModule;
 import org.orienteer.core.module.OrienteerLocalizationModule;
 import org.orienteer.core.module.PerspectivesModule;
 import org.orienteer.core.module.UpdateDefaultSchemaModule;
+import org.orienteer.core.resource.ODocumentBinaryResource;
+import org.orienteer.core.resource.ODocumentImageResource;
 import org.orienteer.core.service.IOClassIntrospector;
+import org.orienteer.core.service.impl.FullTextSearchService;
 import org.orienteer.core.web.BasePage;
 import org.orienteer.core.web.HomePage;
 import org.orienteer.core.web.LoginPage;
@@ -75,6 +79,10 @@ public class OrienteerWebApplication extends OrientDbWebApplication
 	@Inject
 	@Named("orienteer.image.logo")
 	private String imageLogoPath;
+	
+	@Inject(optional=true)
+	@Named("orienteer.datatable.count.ttl")
+	private long dataTableCountTTL = 60000;
 
 	
 	@Inject(optional=true)
@@ -140,6 +148,8 @@ public class OrienteerWebApplication extends OrientDbWebApplication
 		mountPages("org.orienteer.core.web");
 		getResourceBundles().addCssBundle(BasePage.class, "orienteer.css", BasePage.SB_ADMIN_CSS, BasePage.ORIENTEER_CSS);
 		mountResource("logo.png", new SharedResourceReference(imageLogoPath));
+		mountResource(ODocumentBinaryResource.MOUNT_PATH, ODocumentBinaryResource.REFERENCE);
+		mountResource(ODocumentImageResource.MOUNT_PATH, ODocumentImageResource.REFERENCE);
 		getMarkupSettings().setStripWicketTags(true);
 		getResourceSettings().setThrowExceptionOnMissingResource(false);
 		getApplicationListeners().add(new ModuledDataInstallator());
@@ -151,10 +161,17 @@ public class OrienteerWebApplication extends OrientDbWebApplication
 		getOrientDbSettings().getORecordHooks().add(CalculablePropertiesHook.class);
 		getOrientDbSettings().getORecordHooks().add(ReferencesConsistencyHook.class);
 		getOrientDbSettings().getORecordHooks().add(CallbackHook.class);
+		getOrientDbSettings().getORecordHooks().add(FullTextSearchService.SearchInvalidationHook.class);
 		mountOrientDbRestApi();
 		registerWidgets("org.orienteer.core.component.widget");
 		if(renderStrategy!=null) getRequestCycleSettings().setRenderStrategy(renderStrategy);
 	}
+	
+	@Override
+	protected void onDestroy() {
+		getServiceInstance(MaterializationQueue.class).shutdown();
+		super.onDestroy();
+	}
 
 	@Override
 	protected Class<? extends WebPage> getSignInPageClass() {
@@ -202,6 +219,14 @@ public class OrienteerWebApplication extends OrientDbWebApplication
 		return getServiceInstance(IOClassIntrospector.class);
 	}
 	
+	/**
+	 * @return time in milliseconds to keep exact sizes of data tables. Sizes are calculated synchronously if it's not positive
+	 */
+	public long getDataTableCountTTL()
+	{
+		return dataTableCountTTL;
+	}
+	
 	public void mountPages(String packageName) {
 		mountPages(packageName, OrienteerWebApplication.class.getClassLoader());
 	}
@@ -20,6 +20,7 @@ import org.orienteer.core.component.TabsPanel;
 import org.orienteer.core.component.command.AbstractCheckBoxEnabledCommand;
 import org.orienteer.core.component.property.DisplayMode;
 import org.orienteer.core.component.table.OrienteerDataTable;
+import org.orienteer.core.model.QuerySizeKeyModel;
 import org.orienteer.core.service.IOClassIntrospector;
 import org.orienteer.core.web.SearchPage;
 
@@ -115,10 +116,12 @@ public abstract class SelectDialogPanel extends GenericPanel<String>
 	
 	private void prepareResults(OClass oClass)
 	{
-		OQueryDataProvider<ODocument> provider = new OQueryDataProvider<ODocument>("select from "+oClass.getName()+" where any() containstext :text");
+		String sql = "select from "+oClass.getName()+" where any() containstext :text";
+		OQueryDataProvider<ODocument> provider = new OQueryDataProvider<ODocument>(sql);
 		provider.setParameter("text", getModel());
 		OrienteerDataTable<ODocument, String> table = 
 				new OrienteerDataTable<ODocument, String>("results", oClassIntrospector.getColumnsFor(oClass, true, DisplayMode.VIEW.asModel()), provider, 20);
+		table.setSizeKeyModel(new QuerySizeKeyModel(sql, getModel()));
 		table.addCommand(new AbstractCheckBoxEnabledCommand<ODocument>(new ResourceModel("command.select"), table)
 				{
 					
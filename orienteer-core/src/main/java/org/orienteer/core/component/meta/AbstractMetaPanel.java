@@ -1,11 +1,16 @@
 package org.orienteer.core.component.meta;
 
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.markup.IMarkupFragment;
 import org.apache.wicket.markup.html.form.FormComponent;
@@ -14,6 +19,7 @@ import org.apache.wicket.markup.html.form.LabeledWebMarkupContainer;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.visit.ClassVisitFilter;
 import org.apache.wicket.util.visit.IVisit;
@@ -44,6 +50,28 @@ public abstract class AbstractMetaPanel<T, C, V> extends AbstractEntityAndProper
 	
 	private Component component;
 	
+	private transient boolean inputConverted;
+	
+	private static final MetaDataKey<Map<MarkupContainer, Map<Object, AbstractMetaPanel<?, ?, ?>>>> META_COMPONENTS_IN_REQUEST
+						= new MetaDataKey<Map<MarkupContainer, Map<Object, AbstractMetaPanel<?, ?, ?>>>>() {
+		private static final long serialVersionUID = 1L;
+	};
+	
+	private static final MethodHandle CONVERT_INPUT;
+	
+	static
+	{
+		try
+		{
+			Method convertInputMethod = FormComponent.class.getDeclaredMethod("convertInput");
+			convertInputMethod.setAccessible(true);
+			CONVERT_INPUT = MethodHandles.lookup().unreflect(convertInputMethod);
+		} catch (NoSuchMethodException | IllegalAccessException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
 	
 	
 	public AbstractMetaPanel(String id, IModel<T> entityModel,
@@ -67,6 +95,7 @@ public abstract class AbstractMetaPanel<T, C, V> extends AbstractEntityAndProper
 		if(!newSignature.equals(stateSignature) || get(PANEL_ID)==null)
 		{
 			stateSignature = newSignature;
+			inputConverted = false;
 			component = resolveComponent(PANEL_ID, critery);
 			onPostResolveComponent(component, critery);
 //			component.setOutputMarkupId(true);
@@ -139,7 +168,11 @@ public abstract class AbstractMetaPanel<T, C, V> extends AbstractEntityAndProper
 		if(component instanceof FormComponent && ((FormComponent<V>)component).hasRawInput())
 		{
 			FormComponent<V> formComponent = (FormComponent<V>)component;
-			convertInput(formComponent);
+			if(!inputConverted)
+			{
+				convertInput(formComponent);
+				inputConverted = true;
+			}
 			return formComponent.getConvertedInput();
 		}
 		else
@@ -152,13 +185,20 @@ public abstract class AbstractMetaPanel<T, C, V> extends AbstractEntityAndProper
 	{
 		try
 		{
-			Method convertInputMethod = FormComponent.class.getDeclaredMethod("convertInput");
-			convertInputMethod.setAccessible(true);
-			convertInputMethod.invoke(formComponent);
-		} catch (Exception e)
+			CONVERT_INPUT.invoke(formComponent);
+		} catch (RuntimeException | Error e)
+		{
+			throw e;
+		} catch (Throwable e)
 		{
 			throw new WicketRuntimeException("Can't invoke 'convertInput' on component", e);
-		} 
+		}
+	}
+	
+	@Override
+	protected void onDetach() {
+		inputConverted = false;
+		super.onDetach();
 	}
 	
 	public <W> W getMetaComponentEnteredValue(C critery)
@@ -178,21 +218,68 @@ public abstract class AbstractMetaPanel<T, C, V> extends AbstractEntityAndProper
 		};
 	}
 	
+	/**
+	 * Lookup meta component for a criteria within a context.
+	 * Meta components of a context are registered once per request, so lookups don't visit the whole components tree.
+	 * Absence of a meta component is remembered till the registry is rebuilt for another criteria
+	 * @param context {@link IMetaContext} to lookup within
+	 * @param critery criteria to lookup for
+	 * @return meta component or null
+	 */
 	@SuppressWarnings("unchecked")
 	public static <K extends AbstractMetaPanel<?, ?, ?>> K getMetaComponent(IMetaContext<?> context, final Object critery)
 	{
 		if(context==null || critery==null) return null;
-		else return (K)context.getContextComponent()
-						.visitChildren(AbstractMetaPanel.class, new IVisitor<AbstractMetaPanel<?, ?, ?>, AbstractMetaPanel<?, ?, ?>>() {
+		MarkupContainer contextComponent = context.getContextComponent();
+		Map<MarkupContainer, Map<Object, AbstractMetaPanel<?, ?, ?>>> registries = getMetaComponentsRegistries();
+		Map<Object, AbstractMetaPanel<?, ?, ?>> registry = registries!=null?registries.get(contextComponent):null;
+		if(registry!=null && registry.containsKey(critery))
+		{
+			AbstractMetaPanel<?, ?, ?> ret = registry.get(critery);
+			if(ret==null || isActualMetaComponent(ret, contextComponent, critery)) return (K) ret;
+		}
+		registry = registerMetaComponents(contextComponent);
+		if(registries!=null) registries.put(contextComponent, registry);
+		AbstractMetaPanel<?, ?, ?> ret = registry.get(critery);
+		//Remember absence of a meta component: null values are allowed in the registry
+		if(ret==null) registry.put(critery, null);
+		return (K) ret;
+	}
+	
+	private static Map<MarkupContainer, Map<Object, AbstractMetaPanel<?, ?, ?>>> getMetaComponentsRegistries()
+	{
+		RequestCycle cycle = RequestCycle.get();
+		if(cycle==null) return null;
+		Map<MarkupContainer, Map<Object, AbstractMetaPanel<?, ?, ?>>> ret = cycle.getMetaData(META_COMPONENTS_IN_REQUEST);
+		if(ret==null)
+		{
+			ret = new IdentityHashMap<MarkupContainer, Map<Object, AbstractMetaPanel<?, ?, ?>>>();
+			cycle.setMetaData(META_COMPONENTS_IN_REQUEST, ret);
+		}
+		return ret;
+	}
+	
+	private static Map<Object, AbstractMetaPanel<?, ?, ?>> registerMetaComponents(MarkupContainer contextComponent)
+	{
+		final Map<Object, AbstractMetaPanel<?, ?, ?>> ret = new HashMap<Object, AbstractMetaPanel<?, ?, ?>>();
+		contextComponent.visitChildren(AbstractMetaPanel.class, new IVisitor<AbstractMetaPanel<?, ?, ?>, Void>() {
 
-							@Override
-							public void component(
-									AbstractMetaPanel<?, ?, ?> object,
-									IVisit<AbstractMetaPanel<?, ?, ?>> visit) {
-								if(Objects.isEqual(object.getPropertyObject(), critery)) visit.stop(object);
-								else visit.dontGoDeeper();
-							}
+			@Override
+			public void component(AbstractMetaPanel<?, ?, ?> object, IVisit<Void> visit) {
+				Object critery = object.getPropertyObject();
+				if(critery!=null && !ret.containsKey(critery)) ret.put(critery, object);
+				visit.dontGoDeeper();
+			}
 		});
+		return ret;
+	}
+	
+	private static boolean isActualMetaComponent(AbstractMetaPanel<?, ?, ?> metaComponent, MarkupContainer contextComponent, Object critery)
+	{
+		if(!Objects.isEqual(metaComponent.getPropertyObject(), critery)) return false;
+		MarkupContainer parent = metaComponent.getParent();
+		while(parent!=null && parent!=contextComponent) parent = parent.getParent();
+		return parent!=null;
 	}
 
 	protected abstract IModel<String> newLabelModel();
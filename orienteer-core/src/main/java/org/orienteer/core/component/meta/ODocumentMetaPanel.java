@@ -26,9 +26,14 @@ import org.orienteer.core.OrienteerWebApplication;
 import org.orienteer.core.component.property.DisplayMode;
 import org.orienteer.core.component.visualizer.IVisualizer;
 import org.orienteer.core.component.visualizer.UIVisualizersRegistry;
+import org.orienteer.core.hook.CalculablePropertiesHook;
+import org.orienteer.core.service.impl.OSchemaMetadata;
+import org.orienteer.core.service.impl.OSchemaMetadata.OClassMetadata;
+import org.orienteer.core.service.impl.OSchemaMetadata.OPropertyMetadata;
 
 import ru.ydn.wicket.wicketorientdb.model.DynamicPropertyValueModel;
 import ru.ydn.wicket.wicketorientdb.model.OPropertyNamingModel;
+import ru.ydn.wicket.wicketorientdb.proto.IPrototype;
 import ru.ydn.wicket.wicketorientdb.validation.OPropertyValueValidator;
 
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
@@ -65,6 +70,12 @@ public class ODocumentMetaPanel<V> extends AbstractModeMetaPanel<ODocument, Disp
 		return new DynamicPropertyValueModel<V>(getEntityModel(), getPropertyModel());
 	}
 	
+	@Override
+	protected void onConfigure() {
+		OProperty property = getPropertyObject();
+		if(property!=null) CalculablePropertiesHook.calculateLazy(getEntityObject(), property.getName());
+		super.onConfigure();
+	}
 	
 
 	@Override
@@ -73,20 +84,35 @@ public class ODocumentMetaPanel<V> extends AbstractModeMetaPanel<ODocument, Disp
 		
 		if(component instanceof FormComponent)
 		{
-			if(critery.isNotNull()) ((FormComponent<?>)component).setRequired(true);
+			OPropertyMetadata metadata = getPropertyMetadata(critery);
+			if(metadata!=null?metadata.isRequired():critery.isNotNull()) ((FormComponent<?>)component).setRequired(true);
 			((FormComponent<?>)component).add(new OPropertyValueValidator<Object>(critery));
 		}
 	}
 	
 	@Override
 	protected DisplayMode getEffectiveMode(DisplayMode mode, OProperty property) {
-		if(mode.canModify() && property!= null
-                && (property.isReadonly() || (Boolean)CustomAttributes.UI_READONLY.getValue(property)))
+		if(mode.canModify() && property!= null)
 		{
-			return DisplayMode.VIEW;
+			OPropertyMetadata metadata = getPropertyMetadata(property);
+			boolean readonly = metadata!=null?metadata.isReadonly()
+										:property.isReadonly() || (Boolean)CustomAttributes.UI_READONLY.getValue(property);
+			if(readonly) return DisplayMode.VIEW;
 		}
 		return mode;
 	}
+	
+	/**
+	 * Lookup precomputed metadata of a property from {@link OSchemaMetadata} snapshot shared between all rows and sessions
+	 * @param property {@link OProperty} to lookup metadata for
+	 * @return {@link OPropertyMetadata} or null if property is not a part of current schema
+	 */
+	protected OPropertyMetadata getPropertyMetadata(OProperty property)
+	{
+		if(property==null || property instanceof IPrototype) return null;
+		OClassMetadata classMetadata = OSchemaMetadata.get(property.getOwnerClass());
+		return classMetadata!=null?classMetadata.getProperty(property.getName()):null;
+	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
@@ -94,8 +120,10 @@ public class ODocumentMetaPanel<V> extends AbstractModeMetaPanel<ODocument, Disp
 			OProperty property) {
 		OType oType = property.getType();
 		UIVisualizersRegistry registry = OrienteerWebApplication.get().getUIVisualizersRegistry();
-		String visualizationComponent = CustomAttributes.VISUALIZATION_TYPE.getValue(property);
-		if(visualizationComponent!=null)
+		OPropertyMetadata metadata = getPropertyMetadata(property);
+		String visualizationComponent = metadata!=null?metadata.getVisualization()
+											:(String)CustomAttributes.VISUALIZATION_TYPE.getValue(property);
+		if(visualizationComponent!=null && !IVisualizer.DEFAULT_VISUALIZER.equals(visualizationComponent))
 		{
 			IVisualizer visualizer = registry.getComponentFactory(oType, visualizationComponent);
 			if(visualizer!=null) 
@@ -38,6 +38,7 @@ import org.orienteer.core.component.property.OPropertyViewPanel;
 import org.orienteer.core.component.visualizer.UIVisualizersRegistry;
 import org.orienteer.core.model.ListAvailableOTypesModel;
 import org.orienteer.core.model.ListOClassesModel;
+import org.orienteer.core.service.ISearchService;
 
 import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
 import ru.ydn.wicket.wicketorientdb.model.AbstractNamingModel;
@@ -95,8 +96,11 @@ public class OPropertyMetaPanel<V> extends AbstractComplexModeMetaPanel<OPropert
 		OPROPERTY_ATTRS.add(OPropertyPrototyper.COLLATE);
 		OPROPERTY_ATTRS.add(CustomAttributes.DISPLAYABLE.getName());
 		OPROPERTY_ATTRS.add(CustomAttributes.HIDDEN.getName());
+		OPROPERTY_ATTRS.add(CustomAttributes.SEARCHABLE.getName());
 		OPROPERTY_ATTRS.add(CustomAttributes.CALCULABLE.getName());
 		OPROPERTY_ATTRS.add(CustomAttributes.CALC_SCRIPT.getName());
+		OPROPERTY_ATTRS.add(CustomAttributes.CALC_LAZY.getName());
+		OPROPERTY_ATTRS.add(CustomAttributes.CALC_MATERIALIZED.getName());
 		OPROPERTY_ATTRS.add(OPropertyPrototyper.DEFAULT_VALUE);
 
 		// Only single value types are allowed for linked type.
@@ -163,6 +167,10 @@ public class OPropertyMetaPanel<V> extends AbstractComplexModeMetaPanel<OPropert
 			else if((custom = CustomAttributes.fromString(critery))!=null)
 			{
 				custom.setValue(entity, value);
+				if(CustomAttributes.SEARCHABLE.equals(custom))
+				{
+					OrienteerWebApplication.get().getServiceInstance(ISearchService.class).updateSearchIndex(db, entity);
+				}
 			}
 			else
 			{
@@ -192,12 +200,20 @@ public class OPropertyMetaPanel<V> extends AbstractComplexModeMetaPanel<OPropert
 			// Show inverse if current type is a link
 			metaPanel = getMetaComponent(CustomAttributes.PROP_INVERSE.getName());
 			if(metaPanel!=null) metaPanel.setVisibilityAllowed(oType!=null && oType.isLink());
+			
+			// Full-text search is supported only for strings
+			metaPanel = getMetaComponent(CustomAttributes.SEARCHABLE.getName());
+			if(metaPanel!=null) metaPanel.setVisibilityAllowed(OType.STRING.equals(oType));
 		}
 		else if(CustomAttributes.CALCULABLE.getName().equals(critery))
 		{
 			Boolean calculable = (Boolean) getEnteredValue();
 			AbstractMetaPanel<OProperty, String, ?> metaPanel = getMetaComponent(CustomAttributes.CALC_SCRIPT.getName());
 			if(metaPanel!=null) metaPanel.setVisibilityAllowed(calculable!=null && calculable);
+			metaPanel = getMetaComponent(CustomAttributes.CALC_LAZY.getName());
+			if(metaPanel!=null) metaPanel.setVisibilityAllowed(calculable!=null && calculable);
+			metaPanel = getMetaComponent(CustomAttributes.CALC_MATERIALIZED.getName());
+			if(metaPanel!=null) metaPanel.setVisibilityAllowed(calculable!=null && calculable);
 		}
 	}
 
@@ -228,7 +244,10 @@ public class OPropertyMetaPanel<V> extends AbstractComplexModeMetaPanel<OPropert
 					|| CustomAttributes.match(critery, CustomAttributes.UI_READONLY, 
 													   CustomAttributes.DISPLAYABLE,
 													   CustomAttributes.CALCULABLE,
-													   CustomAttributes.HIDDEN))
+													   CustomAttributes.CALC_LAZY,
+													   CustomAttributes.CALC_MATERIALIZED,
+													   CustomAttributes.HIDDEN,
+													   CustomAttributes.SEARCHABLE))
 			{
 				return new BooleanViewPanel(id, (IModel<Boolean>)getModel()).setHideIfFalse(true);
 			}
@@ -286,7 +305,10 @@ public class OPropertyMetaPanel<V> extends AbstractComplexModeMetaPanel<OPropert
 						return new CheckBox(id, (IModel<Boolean>)getModel()).add(new RefreshMetaContextOnChangeBehaviour());
 					case DISPLAYABLE:
 					case HIDDEN:
+					case SEARCHABLE:
 					case UI_READONLY:
+					case CALC_LAZY:
+					case CALC_MATERIALIZED:
 						return new CheckBox(id, (IModel<Boolean>)getModel());
 					case CALC_SCRIPT:
 						return new TextArea<V>(id, getModel());
@@ -3,13 +3,16 @@ package org.orienteer.core.component.property;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.apache.wicket.markup.html.link.ExternalLink;
 import org.apache.wicket.markup.html.link.ResourceLink;
 import org.apache.wicket.markup.html.panel.GenericPanel;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.resource.AbstractResource;
 import org.apache.wicket.request.resource.AbstractResource.ResourceResponse;
 import org.apache.wicket.request.resource.IResource.Attributes;
+import org.orienteer.core.resource.ODocumentBinaryResource;
 import org.orienteer.core.service.IOClassIntrospector;
 
 import com.google.inject.Inject;
@@ -17,13 +20,16 @@ import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 
 /**
- * {@link GenericPanel} to view binary parameters (download)
+ * {@link GenericPanel} to view binary parameters (download).
+ * Binary values of stored documents are downloaded through shared {@link ODocumentBinaryResource}
  *
  * @param <V>
  */
 public class BinaryViewPanel<V> extends GenericPanel<V> {
 	
 	private IModel<String> nameModel;
+	private IModel<ODocument> docModel;
+	private IModel<OProperty> propModel;
 	
 	@Inject
 	private IOClassIntrospector oClassIntrospector;
@@ -31,6 +37,8 @@ public class BinaryViewPanel<V> extends GenericPanel<V> {
 	@SuppressWarnings("unchecked")
 	public BinaryViewPanel(String id, final IModel<ODocument> docModel, final IModel<OProperty> propModel, IModel<V> valueModel) {
 		super(id, valueModel);
+		this.docModel = docModel;
+		this.propModel = propModel;
 		
 		nameModel = new LoadableDetachableModel<String>() {
 
@@ -58,7 +66,19 @@ public class BinaryViewPanel<V> extends GenericPanel<V> {
 	}
 	
 	protected void initialize() {
-		add(new ResourceLink<byte[]>("data", new AbstractResource() {
+		ODocument doc = docModel!=null?docModel.getObject():null;
+		if(doc!=null && doc.getIdentity().isPersistent() && propModel!=null && propModel.getObject()!=null) {
+			add(new ExternalLink("data", new AbstractReadOnlyModel<String>() {
+
+				@Override
+				public String getObject() {
+					return urlFor(ODocumentBinaryResource.REFERENCE,
+							ODocumentBinaryResource.toPageParameters(docModel.getObject(), propModel.getObject().getName()))
+							.toString();
+				}
+			}));
+		}
+		else add(new ResourceLink<byte[]>("data", new AbstractResource() {
 			
 			@Override
 			protected ResourceResponse newResourceResponse(Attributes attributes) {
@@ -1,29 +1,91 @@
 package org.orienteer.core.component.property;
 
+import java.io.IOException;
+
 import org.apache.tika.Tika;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.DataTable;
+import org.apache.wicket.markup.html.image.ExternalImage;
 import org.apache.wicket.markup.html.image.Image;
-import org.apache.wicket.markup.html.panel.EmptyPanel;
 import org.apache.wicket.markup.html.panel.GenericPanel;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
-import org.apache.wicket.request.resource.ByteArrayResource;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.orienteer.core.resource.ODocumentImageResource;
+
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.record.impl.ODocument;
 
 /**
- * {@link GenericPanel} to view binary images
+ * {@link GenericPanel} to view binary images.
+ * Images of stored documents are served by shared {@link ODocumentImageResource}, so no bytes are kept in a page.
+ * Thumbnails are used within tables.
  *
  * @param <V>
  */
 public class ImageViewPanel<V> extends GenericPanel<V> {
 
+	private IModel<ODocument> docModel;
+	private IModel<OProperty> propModel;
+
 	public ImageViewPanel(String id, IModel<V> valueModel) {
+		this(id, null, null, valueModel);
+	}
+
+	public ImageViewPanel(String id, IModel<ODocument> docModel, IModel<OProperty> propModel, IModel<V> valueModel) {
 		super(id, valueModel);
+		this.docModel = docModel;
+		this.propModel = propModel;
+		ODocument doc = docModel!=null?docModel.getObject():null;
+		if(doc!=null && doc.getIdentity().isPersistent() && propModel!=null && propModel.getObject()!=null) {
+			add(new ExternalImage("image", new AbstractReadOnlyModel<String>() {
 
-		byte[] imageBytes = (byte[]) getModelObject();
-		if (imageBytes != null) {
-			String mimeType = new Tika().detect(imageBytes);
-			ByteArrayResource byteArrayResource = new ByteArrayResource(mimeType, imageBytes);
-			add(new Image("image", byteArrayResource));
+				@Override
+				public String getObject() {
+					return getImageUrl();
+				}
+			}));
 		} else {
-			add(new EmptyPanel("image"));
+			add(new Image("image", new AbstractResource() {
+
+				@Override
+				protected ResourceResponse newResourceResponse(Attributes attributes) {
+					ResourceResponse response = new ResourceResponse();
+					final byte[] imageBytes = (byte[]) getModelObject();
+					if(imageBytes==null) {
+						response.setError(404);
+						return response;
+					}
+					response.setContentType(new Tika().detect(imageBytes));
+					response.setWriteCallback(new WriteCallback() {
+
+						@Override
+						public void writeData(Attributes attributes) throws IOException {
+							attributes.getResponse().write(imageBytes);
+						}
+					});
+					return response;
+				}
+			}));
 		}
 	}
+
+	protected String getImageUrl() {
+		int size = findParent(DataTable.class)!=null?ODocumentImageResource.THUMBNAIL_SIZE:0;
+		return urlFor(ODocumentImageResource.REFERENCE,
+				ODocumentImageResource.toPageParameters(docModel.getObject(), propModel.getObject().getName(), size))
+				.toString();
+	}
+
+	@Override
+	protected void onConfigure() {
+		super.onConfigure();
+		get("image").setVisible(getModelObject()!=null);
+	}
+
+	@Override
+	public void detachModels() {
+		super.detachModels();
+		if(docModel!=null) docModel.detach();
+		if(propModel!=null) propModel.detach();
+	}
 }
@@ -1,22 +1,70 @@
 package org.orienteer.core.component.table;
 
+import java.util.Date;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.datetime.markup.html.basic.DateLabel;
+import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulator;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
+import org.orienteer.core.OrienteerWebApplication;
 import org.orienteer.core.component.meta.AbstractMetaPanel;
 import org.orienteer.core.component.meta.ODocumentMetaPanel;
 import org.orienteer.core.component.property.DisplayMode;
+import org.orienteer.core.component.visualizer.IVisualizer;
+import org.orienteer.core.hook.CalculablePropertiesHook;
+import org.orienteer.core.service.impl.OSchemaMetadata;
+import org.orienteer.core.service.impl.OSchemaMetadata.OClassMetadata;
+import org.orienteer.core.service.impl.OSchemaMetadata.OPropertyMetadata;
 
 import ru.ydn.wicket.wicketorientdb.model.OPropertyModel;
 import ru.ydn.wicket.wicketorientdb.model.OPropertyNamingModel;
+import ru.ydn.wicket.wicketorientdb.proto.IPrototype;
 
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 /**
- * {@link AbstractModeMetaColumn} for {@link ODocument}s
+ * {@link AbstractModeMetaColumn} for {@link ODocument}s.
+ * In VIEW mode plain values with default visualization are rendered by a single label per cell
+ * instead of a full {@link ODocumentMetaPanel}.
  */
 public class OPropertyValueColumn extends AbstractModeMetaColumn<ODocument, DisplayMode, OProperty, String>
 {
 	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Read-only model of a field value which keeps nothing but a row model and a field name
+	 *
+	 * @param <V> type of a value
+	 */
+	private static class FieldValueModel<V> extends AbstractReadOnlyModel<V>
+	{
+		private static final long serialVersionUID = 1L;
+		private final IModel<ODocument> rowModel;
+		private final String field;
+		
+		public FieldValueModel(IModel<ODocument> rowModel, String field)
+		{
+			this.rowModel = rowModel;
+			this.field = field;
+		}
+
+		@Override
+		public V getObject() {
+			ODocument doc = rowModel.getObject();
+			if(doc==null) return null;
+			CalculablePropertiesHook.calculateLazy(doc, field);
+			return doc.field(field);
+		}
+		
+		@Override
+		public void detach() {
+			rowModel.detach();
+		}
+	}
 
 	public OPropertyValueColumn(OProperty oProperty, IModel<DisplayMode> modeModel)
 	{
@@ -38,6 +86,46 @@ public class OPropertyValueColumn extends AbstractModeMetaColumn<ODocument, Disp
 		super(sortProperty, criteryModel, modeModel);
 	}
 
+	@Override
+	public void populateItem(Item<ICellPopulator<ODocument>> cellItem, String componentId, IModel<ODocument> rowModel) {
+		Component component = DisplayMode.VIEW.equals(getModeObject())?newViewComponent(componentId, rowModel):null;
+		if(component!=null) cellItem.add(component);
+		else super.populateItem(cellItem, componentId, rowModel);
+	}
+	
+	/**
+	 * Create lightweight component to display a value of the property in VIEW mode
+	 * @param componentId id of a component
+	 * @param rowModel model of a document
+	 * @return component or null if a value requires full {@link ODocumentMetaPanel}
+	 */
+	protected Component newViewComponent(String componentId, IModel<ODocument> rowModel) {
+		OProperty property = getCriteryModel().getObject();
+		if(property==null || property instanceof IPrototype) return null;
+		OClassMetadata classMetadata = OSchemaMetadata.get(property.getOwnerClass());
+		OPropertyMetadata metadata = classMetadata!=null?classMetadata.getProperty(property.getName()):null;
+		if(metadata==null || (metadata.getVisualization()!=null
+				&& !IVisualizer.DEFAULT_VISUALIZER.equals(metadata.getVisualization()))) return null;
+		String field = property.getName();
+		switch (property.getType()) {
+			case STRING:
+			case BYTE:
+			case SHORT:
+			case INTEGER:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+			case DECIMAL:
+				return new Label(componentId, new FieldValueModel<Object>(rowModel, field));
+			case DATE:
+				return new DateLabel(componentId, new FieldValueModel<Date>(rowModel, field), OrienteerWebApplication.DATE_CONVERTER);
+			case DATETIME:
+				return new DateLabel(componentId, new FieldValueModel<Date>(rowModel, field), OrienteerWebApplication.DATE_TIME_CONVERTER);
+			default:
+				return null;
+		}
+	}
+
 	@Override
 	protected <V> AbstractMetaPanel<ODocument, OProperty, V> newMetaPanel(
 			String componentId, IModel<OProperty> criteryModel,
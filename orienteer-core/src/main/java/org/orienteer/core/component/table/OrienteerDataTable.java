@@ -1,8 +1,12 @@
 package org.orienteer.core.component.table;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.event.Broadcast;
 import org.apache.wicket.event.IEvent;
@@ -16,17 +20,22 @@ import org.apache.wicket.extensions.markup.html.repeater.data.table.ISortableDat
 import org.apache.wicket.extensions.markup.html.repeater.data.table.NavigationToolbar;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.NoRecordsToolbar;
 import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.OddEvenItem;
 import org.apache.wicket.markup.repeater.ReuseIfModelsEqualStrategy;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
+import org.orienteer.core.OrienteerWebApplication;
 import org.orienteer.core.component.ICommandsSupportComponent;
 import org.orienteer.core.component.command.Command;
 import org.orienteer.core.component.meta.AbstractMetaPanel;
 import org.orienteer.core.component.meta.IMetaContext;
 import org.orienteer.core.component.table.navigation.OrienteerNavigationToolbar;
 import org.orienteer.core.event.ActionPerformedEvent;
+import org.orienteer.core.model.CalculableBatchDataProvider;
+import org.orienteer.core.model.DeferredCountDataProvider;
 
 /**
  * Bootstrap enabled {@link DataTable}
@@ -73,16 +82,62 @@ public class OrienteerDataTable<T, S> extends DataTable<T, S> implements IComman
 	
 	private IModel<String> captionModel;
 	
+	private Serializable columnsModesSignature;
+	
 	public OrienteerDataTable(String id, List<? extends IColumn<T, S>> columns,
 			ISortableDataProvider<T, S> dataProvider, int rowsPerPage)
 	{
-		super(id, columns, dataProvider, rowsPerPage);
+		super(id, columns, new DeferredCountDataProvider<T, S>(new CalculableBatchDataProvider<T, S>(dataProvider),
+																OrienteerWebApplication.get().getDataTableCountTTL()), rowsPerPage);
 		addTopToolbar(commandsToolbar= new DataTableCommandsToolbar<T>(this));
 		addTopToolbar(headersToolbar = new AjaxFallbackHeadersToolbar<S>(this, dataProvider));
 		addBottomToolbar(navigationToolbar = new OrienteerNavigationToolbar(this));
 		addBottomToolbar(noRecordsToolbar = new NoRecordsToolbar(this));
+		//Toolbars depend on the size only and are updated alone when it's calculated
+		navigationToolbar.setOutputMarkupPlaceholderTag(true);
+		noRecordsToolbar.setOutputMarkupPlaceholderTag(true);
 		setOutputMarkupPlaceholderTag(true);
 		setItemReuseStrategy(ReuseIfModelsEqualStrategy.getInstance());
+		add(new AbstractDefaultAjaxBehavior() {
+			
+			@Override
+			protected void respond(AjaxRequestTarget target) {
+				DeferredCountDataProvider<T, S> provider = getDeferredCountDataProvider();
+				//Size might be already known from an incomplete page of the previous request
+				if(!provider.isSizeKnown()) provider.calculateSize();
+				//Rows are already rendered: re-rendering of the whole table would query them again
+				target.add(navigationToolbar, noRecordsToolbar);
+			}
+			
+			@Override
+			public void renderHead(Component component, IHeaderResponse response) {
+				super.renderHead(component, response);
+				if(!getDeferredCountDataProvider().isSizeKnown())
+				{
+					response.render(OnDomReadyHeaderItem.forScript(getCallbackScript()));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * @return {@link DeferredCountDataProvider} which wraps data provider of this table
+	 */
+	@SuppressWarnings("unchecked")
+	public DeferredCountDataProvider<T, S> getDeferredCountDataProvider()
+	{
+		return (DeferredCountDataProvider<T, S>) getDataProvider();
+	}
+
+	/**
+	 * Set model of a key of a query and its parameters to share calculated size between tables
+	 * @param sizeKeyModel model of a key
+	 * @return this table
+	 */
+	public OrienteerDataTable<T, S> setSizeKeyModel(IModel<? extends Serializable> sizeKeyModel)
+	{
+		getDeferredCountDataProvider().setSizeKeyModel(sizeKeyModel);
+		return this;
 	}
 
 	public DataTableCommandsToolbar<T> getCommandsToolbar() {
@@ -116,6 +171,28 @@ public class OrienteerDataTable<T, S> extends DataTable<T, S> implements IComman
 		return commandsToolbar.newCommandId();
 	}
 
+	@Override
+	protected void onBeforeRender() {
+		Serializable signature = getColumnsModesSignature();
+		if(columnsModesSignature!=null && !columnsModesSignature.equals(signature))
+		{
+			//Rows are reused if models are equal, but cells might be populated differently for another mode
+			((MarkupContainer)getBody().get("rows")).removeAll();
+		}
+		columnsModesSignature = signature;
+		super.onBeforeRender();
+	}
+	
+	protected Serializable getColumnsModesSignature()
+	{
+		ArrayList<Object> ret = new ArrayList<Object>();
+		for(IColumn<T, S> column : getColumns())
+		{
+			if(column instanceof AbstractModeMetaColumn) ret.add(((AbstractModeMetaColumn<?, ?, ?, ?>)column).getModeObject());
+		}
+		return ret;
+	}
+
 	@Override
 	public void onEvent(IEvent<?> event) {
 		
@@ -128,6 +205,7 @@ public class OrienteerDataTable<T, S> extends DataTable<T, S> implements IComman
 				//This is work around: wicket sometimes invoke model.getObject() before action
 				//and if action change model table can display wrong information
 				getDataProvider().detach();
+				getDeferredCountDataProvider().resetSize();
 			}
 			
 			if(target!=null) {
@@ -4,6 +4,8 @@ import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.DataTable;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.NavigationToolbar;
 import org.apache.wicket.markup.html.navigation.paging.PagingNavigator;
+import org.apache.wicket.markup.repeater.data.IDataProvider;
+import org.orienteer.core.model.DeferredCountDataProvider;
 
 /**
  * AJAX-enabled and bootstrap orienteed {@link NavigationToolbar}
@@ -17,6 +19,15 @@ public class OrienteerNavigationToolbar extends NavigationToolbar
 		super(table);
 	}
 
+	@Override
+	protected void onConfigure() {
+		super.onConfigure();
+		//Hide navigation till exact size is calculated
+		IDataProvider<?> dataProvider = getTable().getDataProvider();
+		if(dataProvider instanceof DeferredCountDataProvider 
+				&& !((DeferredCountDataProvider<?, ?>)dataProvider).isSizeKnown()) setVisible(false);
+	}
+
 	@Override
 	protected PagingNavigator newPagingNavigator(final String navigatorId, final DataTable<?, ?> table)
 	{
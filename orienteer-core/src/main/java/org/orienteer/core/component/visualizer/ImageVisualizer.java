@@ -22,7 +22,7 @@ public class ImageVisualizer extends AbstractSimpleVisualizer {
         switch (mode)
         {
             case VIEW:
-                return new ImageViewPanel<V>(id, valueModel);
+                return new ImageViewPanel<V>(id, documentModel, propertyModel, valueModel);
             case EDIT:
                 return new ImageEditPanel(id, (IModel<byte[]>)valueModel);
             default:
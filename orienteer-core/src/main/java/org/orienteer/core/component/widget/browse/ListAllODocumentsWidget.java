@@ -12,12 +12,12 @@ import org.orienteer.core.component.command.EditODocumentsCommand;
 import org.orienteer.core.component.command.SaveODocumentsCommand;
 import org.orienteer.core.component.property.DisplayMode;
 import org.orienteer.core.component.table.OrienteerDataTable;
+import org.orienteer.core.model.OClassBrowseDataProvider;
 import org.orienteer.core.service.IOClassIntrospector;
 import org.orienteer.core.widget.AbstractWidget;
 import org.orienteer.core.widget.Widget;
 
 import ru.ydn.wicket.wicketorientdb.model.OClassNamingModel;
-import ru.ydn.wicket.wicketorientdb.model.OQueryDataProvider;
 
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
@@ -38,7 +38,7 @@ public class ListAllODocumentsWidget extends AbstractWidget<OClass> {
 		IModel<DisplayMode> modeModel = DisplayMode.VIEW.asModel();
 		
 		Form<ODocument> form = new Form<ODocument>("form");
-		OQueryDataProvider<ODocument> provider = new OQueryDataProvider<ODocument>("select from "+getModelObject().getName());
+		OClassBrowseDataProvider provider = new OClassBrowseDataProvider(getModel());
 		
 		OrienteerDataTable<ODocument, String> table = 
 				new OrienteerDataTable<ODocument, String>("table", oClassIntrospector.getColumnsFor(getModelObject(), true, modeModel), provider, 20);
@@ -25,6 +25,7 @@ import org.orienteer.core.component.property.DisplayMode;
 import org.orienteer.core.component.table.OrienteerDataTable;
 import org.orienteer.core.component.widget.AbstractHtmlJsPaneWidget;
 import org.orienteer.core.model.ODocumentNameModel;
+import org.orienteer.core.model.QuerySizeKeyModel;
 import org.orienteer.core.service.impl.OClassIntrospector;
 import org.orienteer.core.widget.AbstractWidget;
 import org.orienteer.core.widget.Widget;
@@ -62,6 +63,7 @@ public class CalculatedDocumentsWidget extends AbstractWidget<ODocument> {
         	List<? extends IColumn<ODocument, String>> columns = oClassIntrospector.getColumnsFor(commonParent, true, modeModel);
         	OrienteerDataTable<ODocument, String> table =
         			new OrienteerDataTable<ODocument, String>("table", columns, provider, 20);
+        	table.setSizeKeyModel(new QuerySizeKeyModel(sql, model));
         	
         	table.addCommand(new EditODocumentsCommand(table, modeModel, commonParent));
         	table.addCommand(new SaveODocumentsCommand(table, modeModel));
@@ -1,21 +1,35 @@
 package org.orienteer.core.hook;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.util.string.Strings;
 import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.OrienteerWebApplication;
 
 import com.google.common.base.Function;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Table;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.OMultiValueChangeEvent;
+import com.orientechnologies.orient.core.db.record.OMultiValueChangeTimeLine;
+import com.orientechnologies.orient.core.db.record.ORecordLazyMultiValue;
 import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.schema.OSchema;
@@ -27,13 +41,29 @@ import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
  * {@link ODocumentHookAbstract} for automatic calculation of some properties.
  * Properties to be automatically calculated should be marked by {@link CustomAttributes}.CALCULABLE
  * Logic for calculation should be stored in {@link CustomAttributes}.CALC_SCRIPT
+ * Calculation can be batched for a set of documents: see {@link #startBatch()} and {@link #finishBatch()}.
+ * Calculated values are remembered for the current request till the first modification.
+ * Scripts are decoded and prepared once per database and schema version.
+ * Properties marked by {@link CustomAttributes}.CALC_LAZY are calculated only on demand: see {@link #calculateLazy(ODocument, String...)}
+ * Properties marked by {@link CustomAttributes}.CALC_MATERIALIZED are stored in documents and recalculated by {@link MaterializationQueue}
+ * after commit of changes of the document itself or of a document linked with it.
  */
 public class CalculablePropertiesHook extends ODocumentHookAbstract
 {
 	private final static Pattern FULL_QUERY_PATTERN = Pattern.compile("^\\s*(select|traverse)", Pattern.CASE_INSENSITIVE);
 	
-	private Map<String, Integer> schemaVersions = new ConcurrentHashMap<String, Integer>();
-	private Table<String, String, List<String>> calcProperties = HashBasedTable.create();
+	private static final MetaDataKey<Map<ORID, CalculatedValues>> CALCULATED_IN_REQUEST = new MetaDataKey<Map<ORID,CalculatedValues>>() {
+		private static final long serialVersionUID = 1L;
+	};
+	private static final ThreadLocal<CalculationBatch> BATCH = new ThreadLocal<CalculationBatch>();
+	private static final ThreadLocal<Set<ORID>> CALCULATING = new ThreadLocal<Set<ORID>>();
+	private static final ThreadLocal<Boolean> MATERIALIZING = new ThreadLocal<Boolean>()
+			{
+				@Override
+				protected Boolean initialValue() {
+					return false;
+				}
+			};
 	
 	public CalculablePropertiesHook(ODatabaseDocument database) {
 		super(database);
@@ -44,36 +74,17 @@ public class CalculablePropertiesHook extends ODocumentHookAbstract
 		return DISTRIBUTED_EXECUTION_MODE.SOURCE_NODE;
 	}
 	
-	@SuppressWarnings("deprecation")
-	private List<String> getCalcProperties(ODocument iDocument)
+	private static CalculationPlans getCalculationPlans(ODatabaseDocument db)
+	{
+		return HooksMetadata.get(db).getCalculationPlans();
+	}
+	
+	private static Map<String, CalculationPlan> getCalculationPlans(ODocument iDocument)
 	{
 		ODatabaseDocument db = iDocument.getDatabase();
 		OClass oClass = iDocument.getSchemaClass();
 		if(db==null || oClass==null) return null;
-		OSchema schema = db.getMetadata().getSchema();
-		int schemaVersion = schema.getVersion();
-		Integer prevSchemaVersion = schemaVersions.get(db.getURL());
-		if(!Objects.equals(prevSchemaVersion, schemaVersion))
-		{
-			//Clear and fullfill cache
-			calcProperties.row(db.getURL()).clear();
-			for(OClass clazz: schema.getClasses())
-			{
-				List<String> calcProperties=null;
-				for(OProperty property: clazz.properties())
-				{
-					if(CustomAttributes.CALCULABLE.getValue(property, false))
-					{
-						if(calcProperties==null) calcProperties = new ArrayList<String>();
-						calcProperties.add(property.getName());
-					}
-				}
-				if(calcProperties!=null) this.calcProperties.put(db.getURL(), clazz.getName(), calcProperties);
-			}
-			//Update schemaVersion
-			schemaVersions.put(db.getURL(), schemaVersion);
-		}
-		return calcProperties.get(db.getURL(), oClass.getName());
+		return getCalculationPlans(db).byClass.get(oClass.getName());
 	}
 	
 	@Override
@@ -83,15 +94,17 @@ public class CalculablePropertiesHook extends ODocumentHookAbstract
 
 	@Override
 	public RESULT onRecordBeforeUpdate(ODocument iDocument) {
-		List<String> calcProperties = getCalcProperties(iDocument);
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(iDocument);
 		if(calcProperties!=null && calcProperties.size()>0)
 		{
 			boolean wasChanged=false;
 			String[] fieldNames = iDocument.fieldNames();
 			for (String field : fieldNames)
 			{
-				if(calcProperties.contains(field))
+				if(calcProperties.containsKey(field))
 				{
+					//Materialized values are stored only by the hook itself
+					if(MATERIALIZING.get() && calcProperties.get(field).materialized) continue;
 					boolean tracking = iDocument.isTrackingChanges();
 					if(tracking) iDocument.undo(field);
 //					iDocument.removeField(field);
@@ -104,77 +117,540 @@ public class CalculablePropertiesHook extends ODocumentHookAbstract
 		return RESULT.RECORD_NOT_CHANGED;
 	}
 	
-	/*
-	 * Temporal commenting out! It should be fixed in OrientDB. Issue #4158
-	 * @Override
+	@Override
 	public void onRecordAfterCreate(ODocument iDocument) {
-		onRecordAfterRead(iDocument);
-	}*/
+		forgetCalculated();
+		//Calculation right after creation should be fixed in OrientDB. Issue #4158
+		//So only materialized properties are calculated: in background
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(iDocument);
+		if(hasMaterialized(calcProperties)) enqueueMaterialization(iDocument.getDatabase(), iDocument.getIdentity());
+		enqueueDependents(iDocument);
+	}
 
 	@Override
 	public void onRecordAfterUpdate(ODocument iDocument) {
-		onRecordAfterRead(iDocument);
+		forgetCalculated();
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(iDocument);
+		if(calcProperties!=null && calcProperties.size()>0)
+		{
+			calculateEager(iDocument, calcProperties);
+			if(!MATERIALIZING.get() && hasMaterialized(calcProperties)) enqueueMaterialization(iDocument.getDatabase(), iDocument.getIdentity());
+		}
+		enqueueDependents(iDocument);
+	}
+	
+	@Override
+	public void onRecordAfterDelete(ODocument iDocument) {
+		forgetCalculated();
+		enqueueDependents(iDocument);
 	}
 
 	@Override
 	public void onRecordAfterRead(ODocument iDocument) {
 		super.onRecordAfterRead(iDocument);
-		OClass oClass = iDocument.getSchemaClass();
-		if(oClass!=null)
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(iDocument);
+		
+		if(calcProperties!=null && calcProperties.size()>0)
+		{
+			Set<ORID> calculating = CALCULATING.get();
+			if(calculating!=null && calculating.contains(iDocument.getIdentity())) return;
+			for(CalculationPlan plan : calcProperties.values())
+			{
+				//Materialized value was never stored: calculate it in background
+				if(plan.materialized && !iDocument.containsField(plan.propertyName))
+				{
+					enqueueMaterialization(iDocument.getDatabase(), iDocument.getIdentity());
+					break;
+				}
+			}
+			if(restoreCalculated(iDocument, calcProperties)) return;
+			CalculationBatch batch = BATCH.get();
+			if(batch!=null && iDocument.getIdentity().isPersistent()) batch.add(this, iDocument);
+			else calculateEager(iDocument, calcProperties);
+		}
+	}
+	
+	private void calculateEager(ODocument iDocument, Map<String, CalculationPlan> calcProperties)
+	{
+		List<String> calculated = new ArrayList<String>(calcProperties.size());
+		for (CalculationPlan plan : calcProperties.values()) {
+			//Force calculation. Required for work around issue in OrientDB
+			//if(iDocument.field(calcProperty)!=null) continue;
+			if(plan.eager)
+			{
+				calculate(iDocument, plan);
+				calculated.add(plan.propertyName);
+			}
+		}
+		rememberCalculated(iDocument, calculated);
+	}
+	
+	/**
+	 * Calculate on demand properties marked by {@link CustomAttributes}.CALC_LAZY.
+	 * Properties which were already calculated for the current version of the document within current request are not recalculated.
+	 * Fields which are not lazy calculable properties are ignored.
+	 * @param iDocument document to calculate properties for
+	 * @param fields names of properties to be calculated
+	 */
+	public static void calculateLazy(ODocument iDocument, String... fields)
+	{
+		if(iDocument==null || fields==null || fields.length==0 || !iDocument.getIdentity().isPersistent()) return;
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(iDocument);
+		if(calcProperties==null || calcProperties.isEmpty()) return;
+		CalculatedValues memo = getCalculatedValues(iDocument);
+		List<String> calculated = new ArrayList<String>(fields.length);
+		for(String field : fields)
+		{
+			CalculationPlan plan = calcProperties.get(field);
+			if(plan==null || !plan.lazy) continue;
+			if(memo!=null && memo.values.containsKey(field))
+			{
+				iDocument.field(field, memo.values.get(field));
+			}
+			else
+			{
+				calculate(iDocument, plan);
+				calculated.add(field);
+			}
+		}
+		rememberCalculated(iDocument, calculated);
+	}
+	
+	private static void calculate(ODocument iDocument, CalculationPlan plan)
+	{
+		List<ODocument> calculated = query(iDocument, plan);
+		if(calculated!=null && calculated.size()>0)
+		{
+			iDocument.field(plan.propertyName, plan.convert(calculated));
+		}
+	}
+	
+	private static List<ODocument> query(ODocument iDocument, CalculationPlan plan)
+	{
+		if(plan.fullQuery)
+		{
+			return iDocument.getDatabase().query(new OSQLSynchQuery<Object>(plan.script), iDocument);
+		}
+		else
+		{
+			return iDocument.getDatabase().query(new OSQLSynchQuery<Object>(plan.query+iDocument.getIdentity()));
+		}
+	}
+	
+	/**
+	 * Recalculate properties marked by {@link CustomAttributes}.CALC_MATERIALIZED
+	 * @param iDocument document to recalculate properties for
+	 * @return true if some of values were changed and document should be saved
+	 */
+	static boolean materialize(ODocument iDocument)
+	{
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(iDocument);
+		if(!hasMaterialized(calcProperties)) return false;
+		boolean changed = false;
+		for(CalculationPlan plan : calcProperties.values())
+		{
+			if(!plan.materialized) continue;
+			List<ODocument> calculated = query(iDocument, plan);
+			Object value = calculated!=null && calculated.size()>0?plan.convert(calculated):null;
+			if(value instanceof List) value = new ArrayList<Object>((List<?>)value);
+			//Absent value is stored explicitly even if it's null: otherwise each read would enqueue the document again
+			if(!iDocument.containsField(plan.propertyName) || !Objects.equals(value, iDocument.field(plan.propertyName)))
+			{
+				iDocument.field(plan.propertyName, value);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Save document with recalculated materialized properties
+	 * @param iDocument document to save
+	 */
+	static void saveMaterialized(ODocument iDocument)
+	{
+		try
+		{
+			MATERIALIZING.set(true);
+			iDocument.save();
+		}
+		finally
+		{
+			MATERIALIZING.set(false);
+		}
+	}
+	
+	private static boolean hasMaterialized(Map<String, CalculationPlan> calcProperties)
+	{
+		if(calcProperties==null) return false;
+		for(CalculationPlan plan : calcProperties.values())
+		{
+			if(plan.materialized) return true;
+		}
+		return false;
+	}
+	
+	private static void enqueueMaterialization(ODatabaseDocument db, ORID rid)
+	{
+		OrienteerWebApplication app = OrienteerWebApplication.lookupApplication();
+		if(app!=null) app.getServiceInstance(MaterializationQueue.class).enqueue(db, rid);
+	}
+	
+	/**
+	 * Schedule recalculation of materialized properties of documents which are linked with the changed one
+	 * @param iDocument changed document
+	 */
+	@SuppressWarnings("deprecation")
+	private static void enqueueDependents(ODocument iDocument)
+	{
+		ODatabaseDocument db = iDocument.getDatabase();
+		if(db==null) return;
+		CalculationPlans plans = getCalculationPlans(db);
+		if(plans.materializedClasses.isEmpty()) return;
+		Set<ORID> linked = new LinkedHashSet<ORID>();
+		for(String field : iDocument.fieldNames())
+		{
+			collectLinks(iDocument.rawField(field), linked);
+		}
+		String[] dirtyFields = iDocument.getDirtyFields();
+		if(dirtyFields!=null)
 		{
-			List<String> calcProperties = getCalcProperties(iDocument);
-			
-			if(calcProperties!=null && calcProperties.size()>0)
+			for(String field : dirtyFields)
 			{
-				for (String calcProperty :calcProperties) {
-					//Force calculation. Required for work around issue in OrientDB
-					//if(iDocument.field(calcProperty)!=null) continue;
-					final OProperty property = oClass.getProperty(calcProperty);
-					String script = CustomAttributes.CALC_SCRIPT.getValue(property);
-					if(!Strings.isEmpty(script))
+				collectLinks(iDocument.getOriginalValue(field), linked);
+				OMultiValueChangeTimeLine<Object, Object> timeline = iDocument.getCollectionTimeLine(field);
+				if(timeline!=null)
+				{
+					for(OMultiValueChangeEvent<Object, Object> event : timeline.getMultiValueChangeEvents())
 					{
-						List<ODocument> calculated;
-						if(FULL_QUERY_PATTERN.matcher(script).find())
-						{
-							calculated = iDocument.getDatabase().query(new OSQLSynchQuery<Object>(script), iDocument);
-						}
-						else
-						{
-							script = "select "+script+" as value from "+iDocument.getIdentity();
-							calculated = iDocument.getDatabase().query(new OSQLSynchQuery<Object>(script));
-						}
-						if(calculated!=null && calculated.size()>0)
-						{
-							OType type = property.getType();
-							Object value;
-							if(type.isMultiValue())
-							{
-								final OType linkedType = property.getLinkedType();
-								value = linkedType==null
-										?calculated
-										:Lists.transform(calculated, new Function<ODocument, Object>() {
-											
-											@Override
-											public Object apply(ODocument input) {
-												return OType.convert(input.field("value"), linkedType.getDefaultJavaType());
-											}
-										});
-							}
-							else
-							{
-								value = calculated.get(0).field("value");
+						collectLinks(event.getOldValue(), linked);
+					}
+				}
+			}
+		}
+		OSchema schema = db.getMetadata().getSchema();
+		for(ORID rid : linked)
+		{
+			if(rid.equals(iDocument.getIdentity())) continue;
+			OClass oClass = schema.getClassByClusterId(rid.getClusterId());
+			if(oClass!=null && plans.materializedClasses.contains(oClass.getName())) enqueueMaterialization(db, rid);
+		}
+	}
+	
+	private static void collectLinks(Object value, Set<ORID> links)
+	{
+		if(value==null) return;
+		if(value instanceof OIdentifiable)
+		{
+			ORID rid = ((OIdentifiable)value).getIdentity();
+			if(rid.isPersistent()) links.add(rid);
+		}
+		else if(value instanceof ORecordLazyMultiValue)
+		{
+			Iterator<OIdentifiable> it = ((ORecordLazyMultiValue)value).rawIterator();
+			while(it.hasNext()) collectLinks(it.next(), links);
+		}
+		else if(value instanceof Map)
+		{
+			for(Object item : ((Map<?, ?>)value).values()) collectLinks(item, links);
+		}
+		else if(value instanceof Iterable)
+		{
+			for(Object item : (Iterable<?>)value) collectLinks(item, links);
+		}
+	}
+	
+	/**
+	 * Calculate properties for a set of documents of the same class.
+	 * Simple scripts are evaluated once for the whole set: "select @rid as rid, script as value from [#1:1, #1:2, ...]".
+	 * Full queries, multi-value properties and scripts which aggregates over the set are calculated document by document.
+	 * Lazy properties are skipped.
+	 * @param docs documents to calculate properties for
+	 */
+	private void calculate(List<ODocument> docs)
+	{
+		Map<String, CalculationPlan> calcProperties = getCalculationPlans(docs.get(0));
+		if(calcProperties==null || calcProperties.isEmpty()) return;
+		Set<ORID> rids = new LinkedHashSet<ORID>();
+		for(ODocument doc : docs) rids.add(doc.getIdentity());
+		List<String> calculated = new ArrayList<String>(calcProperties.size());
+		for (CalculationPlan plan : calcProperties.values()) {
+			if(!plan.eager) continue;
+			calculated.add(plan.propertyName);
+			if(rids.size()>1 && plan.batchQuery!=null && calculateInBatch(docs, rids, plan)) continue;
+			for(ODocument doc : docs) calculate(doc, plan);
+		}
+		for(ODocument doc : docs) rememberCalculated(doc, calculated);
+	}
+	
+	private boolean calculateInBatch(List<ODocument> docs, Set<ORID> rids, CalculationPlan plan)
+	{
+		StringBuilder sql = new StringBuilder(plan.batchQuery).append('[');
+		boolean first = true;
+		for(ORID rid : rids)
+		{
+			if(first) first = false;
+			else sql.append(',');
+			sql.append(rid);
+		}
+		sql.append(']');
+		List<ODocument> calculated;
+		try
+		{
+			CALCULATING.set(rids);
+			calculated = docs.get(0).getDatabase().query(new OSQLSynchQuery<Object>(sql.toString()));
+		}
+		finally
+		{
+			CALCULATING.remove();
+		}
+		//Aggregation functions collapse the result: calculation should be done document by document
+		if(calculated==null || calculated.size()!=rids.size()) return false;
+		Map<ORID, Object> values = new HashMap<ORID, Object>(rids.size());
+		for(ODocument row : calculated)
+		{
+			Object rid = row.field("rid");
+			if(!(rid instanceof OIdentifiable)) return false;
+			values.put(((OIdentifiable)rid).getIdentity(), row.field("value"));
+		}
+		if(!values.keySet().containsAll(rids)) return false;
+		for(ODocument doc : docs)
+		{
+			doc.field(plan.propertyName, OType.convert(values.get(doc.getIdentity()), plan.javaType));
+		}
+		return true;
+	}
+	
+	/**
+	 * Start batched calculation: documents read by current thread will be collected
+	 * and their calculable properties will be calculated all together on {@link #finishBatch()}.
+	 * Batches can be nested: calculation is performed when the most outer batch is finished.
+	 */
+	public static void startBatch()
+	{
+		CalculationBatch batch = BATCH.get();
+		if(batch==null)
+		{
+			batch = new CalculationBatch();
+			BATCH.set(batch);
+		}
+		batch.depth++;
+	}
+	
+	/**
+	 * Finish batched calculation and calculate properties for all collected documents
+	 */
+	public static void finishBatch()
+	{
+		CalculationBatch batch = BATCH.get();
+		if(batch==null) return;
+		if(--batch.depth>0) return;
+		BATCH.remove();
+		for(Map.Entry<CalculablePropertiesHook, Map<OClass, List<ODocument>>> hookEntry : batch.documents.entrySet())
+		{
+			CalculablePropertiesHook hook = hookEntry.getKey();
+			for(List<ODocument> docs : hookEntry.getValue().values())
+			{
+				hook.calculate(docs);
+			}
+		}
+	}
+	
+	private static Map<ORID, CalculatedValues> getCalculatedInRequest(boolean create)
+	{
+		RequestCycle cycle = RequestCycle.get();
+		if(cycle==null) return null;
+		Map<ORID, CalculatedValues> ret = cycle.getMetaData(CALCULATED_IN_REQUEST);
+		if(ret==null && create)
+		{
+			ret = new HashMap<ORID, CalculatedValues>();
+			cycle.setMetaData(CALCULATED_IN_REQUEST, ret);
+		}
+		return ret;
+	}
+	
+	private static boolean isMemoizable(ODocument iDocument)
+	{
+		return iDocument.getIdentity().isPersistent() 
+				&& !iDocument.getDatabase().getTransaction().isActive();
+	}
+	
+	private static CalculatedValues getCalculatedValues(ODocument iDocument)
+	{
+		if(!isMemoizable(iDocument)) return null;
+		Map<ORID, CalculatedValues> calculatedInRequest = getCalculatedInRequest(false);
+		if(calculatedInRequest==null) return null;
+		CalculatedValues calculated = calculatedInRequest.get(iDocument.getIdentity());
+		return calculated!=null && calculated.version==iDocument.getVersion()?calculated:null;
+	}
+	
+	private static void rememberCalculated(ODocument iDocument, Collection<String> calcProperties)
+	{
+		if(calcProperties.isEmpty() || !isMemoizable(iDocument)) return;
+		Map<ORID, CalculatedValues> calculatedInRequest = getCalculatedInRequest(true);
+		if(calculatedInRequest==null) return;
+		CalculatedValues calculated = getCalculatedValues(iDocument);
+		if(calculated==null)
+		{
+			calculated = new CalculatedValues(iDocument.getVersion(), new HashMap<String, Object>(calcProperties.size()));
+			calculatedInRequest.put(iDocument.getIdentity().copy(), calculated);
+		}
+		for(String calcProperty : calcProperties)
+		{
+			calculated.values.put(calcProperty, iDocument.field(calcProperty));
+		}
+	}
+	
+	private static boolean restoreCalculated(ODocument iDocument, Map<String, CalculationPlan> calcProperties)
+	{
+		CalculatedValues calculated = getCalculatedValues(iDocument);
+		if(calculated==null) return false;
+		for(CalculationPlan plan : calcProperties.values())
+		{
+			if(plan.eager && !calculated.values.containsKey(plan.propertyName)) return false;
+		}
+		for(Map.Entry<String, Object> entry : calculated.values.entrySet())
+		{
+			iDocument.field(entry.getKey(), entry.getValue());
+		}
+		return true;
+	}
+	
+	private void forgetCalculated()
+	{
+		Map<ORID, CalculatedValues> calculatedInRequest = getCalculatedInRequest(false);
+		if(calculatedInRequest!=null) calculatedInRequest.clear();
+	}
+	
+	/**
+	 * Pre-parsed calculation of a single calculable property
+	 */
+	private static class CalculationPlan
+	{
+		private final String propertyName;
+		private final String script;
+		private final boolean lazy;
+		private final boolean materialized;
+		private final boolean eager;
+		private final boolean fullQuery;
+		private final String query;
+		private final String batchQuery;
+		private final OType type;
+		private final Class<?> javaType;
+		private final Class<?> linkedJavaType;
+		
+		public CalculationPlan(OProperty property)
+		{
+			propertyName = property.getName();
+			String script = CustomAttributes.CALC_SCRIPT.getValue(property);
+			this.script = Strings.isEmpty(script)?null:script;
+			materialized = this.script!=null && CustomAttributes.CALC_MATERIALIZED.getValue(property, false);
+			lazy = this.script!=null && !materialized && CustomAttributes.CALC_LAZY.getValue(property, false);
+			eager = this.script!=null && !materialized && !lazy;
+			fullQuery = this.script!=null && FULL_QUERY_PATTERN.matcher(this.script).find();
+			type = property.getType();
+			javaType = type.getDefaultJavaType();
+			OType linkedType = property.getLinkedType();
+			linkedJavaType = linkedType!=null?linkedType.getDefaultJavaType():null;
+			query = this.script==null || fullQuery?null:"select "+this.script+" as value from ";
+			batchQuery = query==null || type.isMultiValue()?null:"select @rid as rid, "+this.script+" as value from ";
+		}
+		
+		public Object convert(List<ODocument> calculated)
+		{
+			Object value;
+			if(type.isMultiValue())
+			{
+				value = linkedJavaType==null
+						?calculated
+						:Lists.transform(calculated, new Function<ODocument, Object>() {
+							
+							@Override
+							public Object apply(ODocument input) {
+								return OType.convert(input.field("value"), linkedJavaType);
 							}
-							value = OType.convert(value, type.getDefaultJavaType());
-							iDocument.field(calcProperty, value);
-						}
-						
+						});
+			}
+			else
+			{
+				value = calculated.get(0).field("value");
+			}
+			return OType.convert(value, javaType);
+		}
+	}
+	
+	/**
+	 * Calculation plans of all classes of a database for a specific schema version
+	 */
+	static class CalculationPlans
+	{
+		private final Map<String, Map<String, CalculationPlan>> byClass = new HashMap<String, Map<String,CalculationPlan>>();
+		private final Set<String> materializedClasses = new HashSet<String>();
+		
+		public CalculationPlans(OSchema schema)
+		{
+			for(OClass clazz: schema.getClasses())
+			{
+				Map<String, CalculationPlan> plans=null;
+				for(OProperty property: clazz.properties())
+				{
+					if(CustomAttributes.CALCULABLE.getValue(property, false))
+					{
+						if(plans==null) plans = new LinkedHashMap<String, CalculationPlan>();
+						plans.put(property.getName(), new CalculationPlan(property));
 					}
 				}
-				
+				if(plans!=null)
+				{
+					byClass.put(clazz.getName(), Collections.unmodifiableMap(plans));
+					if(hasMaterialized(plans)) materializedClasses.add(clazz.getName());
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Documents collected for batched calculation
+	 */
+	private static class CalculationBatch
+	{
+		private int depth = 0;
+		private final Map<CalculablePropertiesHook, Map<OClass, List<ODocument>>> documents 
+									= new LinkedHashMap<CalculablePropertiesHook, Map<OClass, List<ODocument>>>();
+		
+		public void add(CalculablePropertiesHook hook, ODocument doc)
+		{
+			Map<OClass, List<ODocument>> byClass = documents.get(hook);
+			if(byClass==null)
+			{
+				byClass = new LinkedHashMap<OClass, List<ODocument>>();
+				documents.put(hook, byClass);
+			}
+			OClass oClass = doc.getSchemaClass();
+			List<ODocument> docs = byClass.get(oClass);
+			if(docs==null)
+			{
+				docs = new ArrayList<ODocument>();
+				byClass.put(oClass, docs);
+			}
+			docs.add(doc);
+		}
+	}
 	
+	/**
+	 * Values calculated for a specific version of a document
+	 */
+	private static class CalculatedValues implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+		private final int version;
+		private final Map<String, Object> values;
+		
+		public CalculatedValues(int version, Map<String, Object> values)
+		{
+			this.version = version;
+			this.values = values;
+		}
+	}
 	
 }
@@ -0,0 +1,203 @@
+package org.orienteer.core.hook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.orientechnologies.orient.core.command.OCommandExecutor;
+import com.orientechnologies.orient.core.command.OCommandRequestText;
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseListener;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+
+/**
+ * Utility to postpone actions till commit of the current transaction.
+ * Hooks are called before commit of a transaction, so effects which should be visible outside of a transaction
+ * (background recalculations, invalidation of shared caches and etc.) should be registered here.
+ * Actions are executed right away if there is no active transaction and discarded if the transaction is rolled back.
+ * Changes which should be committed within the transaction itself can be postponed till start of its commit:
+ * see {@link #runBeforeCommit(ODatabaseDocument, Object, Runnable)}.
+ */
+public final class CommitActions
+{
+	private static final Logger LOG = LoggerFactory.getLogger(CommitActions.class);
+
+	private static final Map<ODatabase<?>, PendingActions> PENDING =
+			Collections.synchronizedMap(new WeakHashMap<ODatabase<?>, PendingActions>());
+
+	/**
+	 * {@link ODatabaseListener} which keeps actions of the current transaction of a database
+	 */
+	private static class PendingActions implements ODatabaseListener
+	{
+		private final List<Runnable> actions = new ArrayList<Runnable>();
+		private final Map<Object, Runnable> beforeCommit = new LinkedHashMap<Object, Runnable>();
+
+		public void add(Runnable action)
+		{
+			actions.add(action);
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T extends Runnable> T addBeforeCommit(Object key, T action)
+		{
+			Runnable ret = beforeCommit.get(key);
+			if(ret!=null) return (T)ret;
+			beforeCommit.put(key, action);
+			return action;
+		}
+
+		private void clear()
+		{
+			actions.clear();
+			beforeCommit.clear();
+		}
+
+		private List<Runnable> drain()
+		{
+			if(actions.isEmpty()) return Collections.emptyList();
+			List<Runnable> ret = new ArrayList<Runnable>(actions);
+			actions.clear();
+			return ret;
+		}
+
+		@Override
+		public void onAfterTxCommit(ODatabase iDatabase) {
+			for(Runnable action : drain())
+			{
+				execute(action);
+			}
+		}
+
+		@Override
+		public void onAfterTxRollback(ODatabase iDatabase) {
+			clear();
+		}
+
+		@Override
+		public void onClose(ODatabase iDatabase) {
+			clear();
+		}
+
+		@Override
+		public void onCreate(ODatabase iDatabase) {
+		}
+
+		@Override
+		public void onDelete(ODatabase iDatabase) {
+		}
+
+		@Override
+		public void onOpen(ODatabase iDatabase) {
+		}
+
+		@Override
+		public void onBeforeTxBegin(ODatabase iDatabase) {
+		}
+
+		@Override
+		public void onBeforeTxRollback(ODatabase iDatabase) {
+		}
+
+		@Override
+		public void onBeforeTxCommit(ODatabase iDatabase) {
+			//Actions might register new ones: for example, by saving of documents
+			while(!beforeCommit.isEmpty())
+			{
+				List<Runnable> toRun = new ArrayList<Runnable>(beforeCommit.values());
+				beforeCommit.clear();
+				for(Runnable action : toRun)
+				{
+					action.run();
+				}
+			}
+		}
+
+		@Override
+		public void onBeforeCommand(OCommandRequestText iCommand, OCommandExecutor executor) {
+		}
+
+		@Override
+		public void onAfterCommand(OCommandRequestText iCommand, OCommandExecutor executor, Object result) {
+		}
+
+		@Override
+		public boolean onCorruptionRepairDatabase(ODatabase iDatabase, String iReason, String iWhatWillbeFixed) {
+			return false;
+		}
+	}
+
+	private CommitActions()
+	{
+
+	}
+
+	/**
+	 * Execute an action after commit of the current transaction or right away if there is no active transaction
+	 * @param db database to track transaction of
+	 * @param action action to execute
+	 */
+	public static void runOnCommit(ODatabaseDocument db, Runnable action)
+	{
+		if(db==null || db.isClosed() || !db.getTransaction().isActive())
+		{
+			action.run();
+			return;
+		}
+		getPendingActions(db).add(action);
+	}
+
+	/**
+	 * Execute an action right before commit of the current transaction, so changes made by the action are committed within it.
+	 * Only the first action registered with a key is kept, so it can be used to collect changes of the whole transaction.
+	 * Exception thrown by the action fails the commit.
+	 * If there is no active transaction, the action is executed right away.
+	 * @param db database to track transaction of
+	 * @param key key of an action within a transaction
+	 * @param action action to execute
+	 * @return action which will be executed: registered before with the same key or the specified one
+	 */
+	public static <T extends Runnable> T runBeforeCommit(ODatabaseDocument db, Object key, T action)
+	{
+		if(db==null || db.isClosed() || !db.getTransaction().isActive())
+		{
+			action.run();
+			return action;
+		}
+		return getPendingActions(db).addBeforeCommit(key, action);
+	}
+
+	private static PendingActions getPendingActions(ODatabaseDocument db)
+	{
+		PendingActions pending;
+		synchronized (PENDING)
+		{
+			pending = PENDING.get(db);
+			if(pending==null)
+			{
+				pending = new PendingActions();
+				PENDING.put(db, pending);
+			}
+		}
+		//Listeners might be cleaned up on close of a pooled database: so register every time
+		db.registerListener(pending);
+		return pending;
+	}
+
+	private static void execute(Runnable action)
+	{
+		try
+		{
+			action.run();
+		} catch (Exception e)
+		{
+			LOG.error("Can't execute action on commit", e);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.orienteer.core.hook;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.util.SchemaSnapshotCache;
+import org.orienteer.core.util.SchemaSnapshotCache.ISnapshotFactory;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+
+/**
+ * Immutable snapshot of schema metadata required by Orienteer hooks.
+ * Snapshot is built once per database URL and schema version by {@link SchemaSnapshotCache} and shared between all hooks and threads.
+ */
+public final class HooksMetadata
+{
+	private static final SchemaSnapshotCache<HooksMetadata> CACHE = new SchemaSnapshotCache<HooksMetadata>(new ISnapshotFactory<HooksMetadata>() {
+
+		@Override
+		public HooksMetadata build(int schemaVersion, OSchema schema) {
+			return new HooksMetadata(schemaVersion, schema);
+		}
+	});
+	
+	private final int schemaVersion;
+	private final Map<String, Map<String, InverseLink>> inverseLinks;
+	private final CalculablePropertiesHook.CalculationPlans calculationPlans;
+	
+	/**
+	 * Pair of a property and its inverse property
+	 */
+	public static final class InverseLink
+	{
+		private final OProperty property;
+		private final OProperty inverseProperty;
+		
+		private InverseLink(OProperty property, OProperty inverseProperty)
+		{
+			this.property = property;
+			this.inverseProperty = inverseProperty;
+		}
+		
+		public OProperty getProperty()
+		{
+			return property;
+		}
+		
+		public OProperty getInverseProperty()
+		{
+			return inverseProperty;
+		}
+		
+		public String getName()
+		{
+			return property.getName();
+		}
+	}
+	
+	private HooksMetadata(int schemaVersion, OSchema schema)
+	{
+		this.schemaVersion = schemaVersion;
+		Map<String, Map<String, InverseLink>> inverseLinks = new HashMap<String, Map<String,InverseLink>>();
+		for(OClass oClass : schema.getClasses())
+		{
+			Map<String, InverseLink> links = null;
+			for(OProperty property : oClass.properties())
+			{
+				if(property.getType().isLink())
+				{
+					OProperty inverseProperty = CustomAttributes.PROP_INVERSE.getValue(property);
+					if(inverseProperty!=null)
+					{
+						if(links==null) links = new LinkedHashMap<String, InverseLink>();
+						links.put(property.getName(), new InverseLink(property, inverseProperty));
+					}
+				}
+			}
+			if(links!=null) inverseLinks.put(oClass.getName(), Collections.unmodifiableMap(links));
+		}
+		this.inverseLinks = inverseLinks;
+		this.calculationPlans = new CalculablePropertiesHook.CalculationPlans(schema);
+	}
+	
+	/**
+	 * Obtain actual metadata for a database. Metadata is rebuilt if schema version was changed
+	 * @param db {@link ODatabaseDocument} to obtain metadata for
+	 * @return actual {@link HooksMetadata}
+	 */
+	public static HooksMetadata get(ODatabaseDocument db)
+	{
+		return CACHE.get(db);
+	}
+	
+	public int getSchemaVersion()
+	{
+		return schemaVersion;
+	}
+	
+	/**
+	 * @param oClass {@link OClass} to get links for
+	 * @return inverse links of a class (including inherited properties) mapped by property name
+	 */
+	public Map<String, InverseLink> getInverseLinks(OClass oClass)
+	{
+		Map<String, InverseLink> ret = oClass!=null?inverseLinks.get(oClass.getName()):null;
+		return ret!=null?ret:Collections.<String, InverseLink>emptyMap();
+	}
+	
+	/**
+	 * @param oClass {@link OClass} to check
+	 * @return true if class has properties with inverse links
+	 */
+	public boolean hasInverseLinks(OClass oClass)
+	{
+		return oClass!=null && inverseLinks.containsKey(oClass.getName());
+	}
+	
+	CalculablePropertiesHook.CalculationPlans getCalculationPlans()
+	{
+		return calculationPlans;
+	}
+}
@@ -0,0 +1,176 @@
+package org.orienteer.core.hook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
+import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.OrienteerWebApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.ydn.wicket.wicketorientdb.IOrientDbSettings;
+import ru.ydn.wicket.wicketorientdb.utils.DBClosure;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Background queue for recalculation of properties marked by {@link CustomAttributes}.CALC_MATERIALIZED.
+ * Documents are enqueued only after commit of a transaction which changed them (see {@link CommitActions})
+ * and are kept per database. Documents are collected for a short delay, so several changes of the same document are recalculated once.
+ * Executor should be stopped by {@link #shutdown()} on destroy of an application.
+ */
+@Singleton
+public class MaterializationQueue
+{
+	private static final Logger LOG = LoggerFactory.getLogger(MaterializationQueue.class);
+	private static final long DELAY_MS = 500;
+
+	private final long delay;
+	private final Map<String, Set<ORID>> pending = new HashMap<String, Set<ORID>>();
+	private final ScheduledExecutorService executor =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+																.setDaemon(true)
+																.setNameFormat("orienteer-materialization-%d")
+																.build());
+
+	public MaterializationQueue()
+	{
+		this(DELAY_MS);
+	}
+
+	MaterializationQueue(long delay)
+	{
+		this.delay = delay;
+	}
+
+	/**
+	 * Schedule recalculation of materialized properties of a document after commit of the current transaction
+	 * @param db database of a document
+	 * @param rid {@link ORID} of a document to recalculate: might be temporary till commit
+	 */
+	public void enqueue(ODatabaseDocument db, final ORID rid)
+	{
+		if(db==null || rid==null) return;
+		final String url = db.getURL();
+		CommitActions.runOnCommit(db, new Runnable() {
+
+			@Override
+			public void run() {
+				enqueue(url, rid);
+			}
+		});
+	}
+
+	/**
+	 * Schedule recalculation of materialized properties of already committed document
+	 * @param url URL of a database
+	 * @param rid {@link ORID} of a document to recalculate
+	 */
+	public void enqueue(final String url, ORID rid)
+	{
+		if(url==null || rid==null || !rid.isPersistent()) return;
+		final Application app = OrienteerWebApplication.lookupApplication();
+		if(app==null) return;
+		synchronized (pending)
+		{
+			if(executor.isShutdown()) return;
+			Set<ORID> rids = pending.get(url);
+			if(rids==null)
+			{
+				rids = new LinkedHashSet<ORID>();
+				pending.put(url, rids);
+				executor.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						drain(app, url);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+			rids.add(rid.copy());
+		}
+	}
+
+	/**
+	 * @param url URL of a database
+	 * @return documents of a database which are waiting for recalculation
+	 */
+	Set<ORID> getPending(String url)
+	{
+		synchronized (pending)
+		{
+			Set<ORID> rids = pending.get(url);
+			return rids!=null?new LinkedHashSet<ORID>(rids):Collections.<ORID>emptySet();
+		}
+	}
+
+	/**
+	 * Stop background recalculation: pending documents are discarded
+	 */
+	public void shutdown()
+	{
+		synchronized (pending)
+		{
+			pending.clear();
+			executor.shutdownNow();
+		}
+	}
+
+	private void drain(Application app, String url)
+	{
+		final List<ORID> rids;
+		synchronized (pending)
+		{
+			Set<ORID> set = pending.remove(url);
+			if(set==null) return;
+			rids = new ArrayList<ORID>(set);
+		}
+		try
+		{
+			ThreadContext.setApplication(app);
+			IOrientDbSettings settings = ((OrienteerWebApplication)app).getOrientDbSettings();
+			new DBClosure<Void>(url, settings.getDBInstallatorUserName(), settings.getDBInstallatorUserPassword()) {
+
+				@Override
+				protected Void execute(ODatabaseDocument db) {
+					for(ORID rid : rids)
+					{
+						try
+						{
+							ODocument doc = db.load(rid);
+							if(doc!=null && CalculablePropertiesHook.materialize(doc))
+							{
+								CalculablePropertiesHook.saveMaterialized(doc);
+							}
+						} catch (Exception e)
+						{
+							LOG.error("Can't recalculate materialized properties for "+rid, e);
+						}
+					}
+					return null;
+				}
+			}.execute();
+		} catch (Exception e)
+		{
+			LOG.error("Can't recalculate materialized properties in "+url, e);
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+}
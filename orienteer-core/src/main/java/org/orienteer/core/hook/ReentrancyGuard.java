@@ -0,0 +1,189 @@
+package org.orienteer.core.hook;
+
+import java.util.Arrays;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Tracks documents currently processed by a hook in the current thread.
+ * Documents with valid {@link ORID} are matched by cluster id and position, other documents are matched by identity.
+ * {@link ODocument#equals(Object)} is never called. Membership check is O(1).
+ * Internal arrays are reused between calls and are shrunk back when they grow too much,
+ * so instance is expected to be kept in a {@link ThreadLocal}.
+ */
+public final class ReentrancyGuard
+{
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int MAX_RETAINED_CAPACITY = 1024;
+	private static final long NO_KEY = Long.MIN_VALUE;
+	
+	private ODocument[] docs;
+	private long[] keys;
+	private int size;
+	private int noKeySize;
+	
+	private long[] table;
+	private int tableMask;
+	
+	public ReentrancyGuard()
+	{
+		allocate(INITIAL_CAPACITY);
+	}
+	
+	private void allocate(int capacity)
+	{
+		docs = new ODocument[capacity];
+		keys = new long[capacity];
+		table = new long[capacity*2];
+		Arrays.fill(table, NO_KEY);
+		tableMask = table.length-1;
+	}
+	
+	/**
+	 * Register document as processed
+	 * @param doc {@link ODocument} to register
+	 * @return true if document was registered, false if it's already under processing
+	 */
+	public boolean enter(ODocument doc)
+	{
+		long key = keyOf(doc);
+		if(noKeySize>0 && indexOfIdentity(doc)>=0) return false;
+		if(key!=NO_KEY && containsKey(key)) return false;
+		if(size==docs.length) grow();
+		docs[size] = doc;
+		keys[size] = key;
+		size++;
+		if(key==NO_KEY) noKeySize++;
+		else addKey(key);
+		return true;
+	}
+	
+	/**
+	 * Unregister document
+	 * @param doc {@link ODocument} to unregister
+	 */
+	public void exit(ODocument doc)
+	{
+		int index = size-1;
+		if(index<0) return;
+		if(docs[index]!=doc) index = indexOfIdentity(doc);
+		if(index<0) return;
+		long key = keys[index];
+		if(key==NO_KEY) noKeySize--;
+		else removeKey(key);
+		int toMove = size-index-1;
+		if(toMove>0)
+		{
+			System.arraycopy(docs, index+1, docs, index, toMove);
+			System.arraycopy(keys, index+1, keys, index, toMove);
+		}
+		size--;
+		docs[size] = null;
+		if(size==0 && docs.length>MAX_RETAINED_CAPACITY) allocate(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * @param doc {@link ODocument} to check
+	 * @return true if document is under processing
+	 */
+	public boolean contains(ODocument doc)
+	{
+		if(size==0) return false;
+		long key = keyOf(doc);
+		if(key!=NO_KEY && containsKey(key)) return true;
+		return noKeySize>0 && indexOfIdentity(doc)>=0;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size==0;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	private int indexOfIdentity(ODocument doc)
+	{
+		for(int i=size-1; i>=0; i--)
+		{
+			if(docs[i]==doc) return i;
+		}
+		return -1;
+	}
+	
+	private void grow()
+	{
+		int capacity = docs.length*2;
+		docs = Arrays.copyOf(docs, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		table = new long[capacity*2];
+		Arrays.fill(table, NO_KEY);
+		tableMask = table.length-1;
+		for(int i=0; i<size; i++)
+		{
+			if(keys[i]!=NO_KEY) addKey(keys[i]);
+		}
+	}
+	
+	private static long keyOf(ODocument doc)
+	{
+		ORID rid = doc.getIdentity();
+		if(rid==null || !rid.isValid()) return NO_KEY;
+		return ((long)(rid.getClusterId() & 0xFFFF) << 48) | (rid.getClusterPosition() & 0xFFFFFFFFFFFFL);
+	}
+	
+	private int slotOf(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & tableMask;
+	}
+	
+	private boolean containsKey(long key)
+	{
+		int slot = slotOf(key);
+		while(table[slot]!=NO_KEY)
+		{
+			if(table[slot]==key) return true;
+			slot = (slot+1) & tableMask;
+		}
+		return false;
+	}
+	
+	private void addKey(long key)
+	{
+		int slot = slotOf(key);
+		while(table[slot]!=NO_KEY)
+		{
+			if(table[slot]==key) return;
+			slot = (slot+1) & tableMask;
+		}
+		table[slot] = key;
+	}
+	
+	private void removeKey(long key)
+	{
+		int slot = slotOf(key);
+		while(table[slot]!=key)
+		{
+			if(table[slot]==NO_KEY) return;
+			slot = (slot+1) & tableMask;
+		}
+		//Backward shift deletion to keep probe sequences unbroken
+		int hole = slot;
+		slot = (slot+1) & tableMask;
+		while(table[slot]!=NO_KEY)
+		{
+			int ideal = slotOf(table[slot]);
+			if(((slot-ideal) & tableMask) >= ((slot-hole) & tableMask))
+			{
+				table[hole] = table[slot];
+				hole = slot;
+			}
+			slot = (slot+1) & tableMask;
+		}
+		table[hole] = NO_KEY;
+	}
+}
@@ -3,24 +3,21 @@ package org.orienteer.core.hook;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.Set;
 
-import org.orienteer.core.CustomAttributes;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Predicate;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.OMultiValueChangeEvent;
 import com.orientechnologies.orient.core.db.record.OMultiValueChangeTimeLine;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
 import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
 import com.orientechnologies.orient.core.hook.ORecordHook.DISTRIBUTED_EXECUTION_MODE;
 import com.orientechnologies.orient.core.id.ORID;
@@ -30,32 +27,17 @@ import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 
 /**
- * {@link ODocumentHookAbstract} for keeping references consistency between documents
+ * {@link ODocumentHookAbstract} for keeping references consistency between documents.
+ * Changes of multi-value inverse links are collected and applied once per target document:
+ * within a transaction right before its commit (see {@link CommitActions}), otherwise when processing of a document is finished.
  */
 public class ReferencesConsistencyHook extends ODocumentHookAbstract
 {
-	private static final Logger LOG = LoggerFactory.getLogger(ReferencesConsistencyHook.class);
-	private int currentSchemaVersion=-1;
-	private static final LoadingCache<OClass, Collection<OProperty>> CACHE 
-								= CacheBuilder.newBuilder().build(new CacheLoader<OClass, Collection<OProperty>>() {
-
-									@Override
-									public Collection<OProperty> load(OClass key)
-											throws Exception {
-										return Collections2.filter(key.properties(), new Predicate<OProperty>() {
-												@Override
-												public boolean apply(OProperty property) {
-													return property.getType().isLink() 
-															&& CustomAttributes.PROP_INVERSE.getValue(property)!=null;
-												}
-											});
-									}
-								});
-	private static final ThreadLocal<List<ODocument>> ENTRY_LOCK = new ThreadLocal<List<ODocument>>()
+	private static final ThreadLocal<ReentrancyGuard> ENTRY_LOCK = new ThreadLocal<ReentrancyGuard>()
 			{
 				@Override
-				protected List<ODocument> initialValue() {
-					return new ArrayList<ODocument>(3);
+				protected ReentrancyGuard initialValue() {
+					return new ReentrancyGuard();
 				}
 			};
 	private static final ThreadLocal<Boolean> HOOK_DISABLED = new ThreadLocal<Boolean>()
@@ -65,6 +47,108 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 					return false;
 				}
 			};
+	private static final ThreadLocal<Set<String>> SKIPPED_CLASSES = new ThreadLocal<Set<String>>()
+			{
+				@Override
+				protected Set<String> initialValue() {
+					return Collections.emptySet();
+				}
+			};
+	private static final ThreadLocal<Map<Object, PendingLinks>> PENDING_LINKS = new ThreadLocal<Map<Object, PendingLinks>>()
+			{
+				@Override
+				protected Map<Object, PendingLinks> initialValue() {
+					return new LinkedHashMap<Object, PendingLinks>();
+				}
+			};
+	
+	/**
+	 * Changes of multi-value inverse links of a single document collected to be applied at once
+	 */
+	private static class PendingLinks
+	{
+		private final ODocument doc;
+		private final Map<String, List<LinkChange>> changes = new LinkedHashMap<String, List<LinkChange>>();
+		
+		public PendingLinks(ODocument doc)
+		{
+			this.doc = doc;
+		}
+		
+		public void add(String field, Object value, boolean add)
+		{
+			List<LinkChange> fieldChanges = changes.get(field);
+			if(fieldChanges==null)
+			{
+				fieldChanges = new ArrayList<LinkChange>();
+				changes.put(field, fieldChanges);
+			}
+			fieldChanges.add(new LinkChange(value, add));
+		}
+		
+		public void apply()
+		{
+			ORID rid = doc.getIdentity();
+			//Take the most actual instance: document might be saved after changes collecting
+			ODocument target = rid.isPersistent()?(ODocument)rid.getRecord():doc;
+			if(target==null) return;
+			boolean changed = false;
+			for(Map.Entry<String, List<LinkChange>> entry : changes.entrySet())
+			{
+				String field = entry.getKey();
+				Collection<Object> objects = target.field(field);
+				boolean fieldChanged = false;
+				for(LinkChange change : entry.getValue())
+				{
+					if(change.add)
+					{
+						if(objects==null) objects = new ArrayList<Object>();
+						objects.add(change.value);
+						fieldChanged = true;
+					}
+					else if(objects!=null && objects.remove(change.value))
+					{
+						fieldChanged = true;
+					}
+				}
+				if(fieldChanged)
+				{
+					target.field(field, objects);
+					changed = true;
+				}
+			}
+			//It's safe of fields with multivalue
+			if(changed && !isRegisteredInTransaction(target)) saveOutOfHook(target);
+		}
+	}
+	
+	/**
+	 * Changes of multi-value inverse links collected within a transaction and applied before its commit
+	 */
+	private static class TransactionLinks implements Runnable
+	{
+		private final Map<Object, PendingLinks> pendingLinks = new LinkedHashMap<Object, PendingLinks>();
+		
+		@Override
+		public void run() {
+			applyPendingLinks(pendingLinks);
+		}
+	}
+	
+	/**
+	 * Single change of a multi-value link
+	 */
+	private static class LinkChange
+	{
+		private final Object value;
+		private final boolean add;
+		
+		public LinkChange(Object value, boolean add)
+		{
+			this.value = value;
+			this.add = add;
+		}
+	}
 			
 	public ReferencesConsistencyHook(ODatabaseDocument database) {
 		super(database);
@@ -72,16 +156,25 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 
 	private boolean enter(ODocument doc)
 	{
-		if(doc.getSchemaClass()==null || HOOK_DISABLED.get()) return false;
-		List<ODocument> docs = ENTRY_LOCK.get();
-		boolean ret = !docs.contains(doc);
-		if(ret) docs.add(doc);
-		return ret;
+		OClass oClass = doc.getSchemaClass();
+		if(oClass==null || HOOK_DISABLED.get() || isSkipped(oClass)) return false;
+		return ENTRY_LOCK.get().enter(doc);
+	}
+	
+	private static boolean isSkipped(OClass oClass)
+	{
+		for(String skippedClass : SKIPPED_CLASSES.get())
+		{
+			if(oClass.isSubClassOf(skippedClass)) return true;
+		}
+		return false;
 	}
 	
 	private void exit(ODocument doc)
 	{
-		ENTRY_LOCK.get().remove(doc);
+		ReentrancyGuard guard = ENTRY_LOCK.get();
+		guard.exit(doc);
+		if(guard.isEmpty()) applyPendingLinks(PENDING_LINKS.get());
 	}
 	
 	private boolean isUnderTheLock(ODocument doc)
@@ -89,16 +182,110 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 		return ENTRY_LOCK.get().contains(doc);
 	}
 	
-	private void saveOutOfHook(ODocument doc)
+	private static void saveOutOfHook(ODocument doc)
 	{
+		boolean wasDisabled = disable();
 		try
 		{
-			HOOK_DISABLED.set(true);
 			doc.save();
 		}
 		finally
 		{
-			HOOK_DISABLED.set(false);
+			restore(wasDisabled);
+		}
+	}
+	
+	/**
+	 * Disable maintenance of inverse links for the current thread.
+	 * Caller becomes responsible for consistency of both sides of links.
+	 * @return previous state which should be passed to {@link #restore(boolean)}
+	 */
+	public static boolean disable()
+	{
+		boolean ret = HOOK_DISABLED.get();
+		HOOK_DISABLED.set(true);
+		return ret;
+	}
+	
+	/**
+	 * Restore state of maintenance of inverse links for the current thread
+	 * @param disabled state returned by {@link #disable()}
+	 */
+	public static void restore(boolean disabled)
+	{
+		HOOK_DISABLED.set(disabled);
+	}
+	
+	/**
+	 * Skip maintenance of inverse links of documents of specified classes (and their subclasses) for the current thread.
+	 * Documents of other classes are processed as usual. Caller becomes responsible for consistency of links of skipped documents.
+	 * @param classNames names of classes to skip
+	 * @return previously skipped classes which should be passed to {@link #restoreSkippedClasses(Set)}
+	 */
+	public static Set<String> skipClasses(String... classNames)
+	{
+		Set<String> ret = SKIPPED_CLASSES.get();
+		Set<String> skipped = new HashSet<String>(ret);
+		skipped.addAll(Arrays.asList(classNames));
+		SKIPPED_CLASSES.set(skipped);
+		return ret;
+	}
+	
+	/**
+	 * Restore classes to skip for the current thread
+	 * @param skippedClasses classes returned by {@link #skipClasses(String...)}
+	 */
+	public static void restoreSkippedClasses(Set<String> skippedClasses)
+	{
+		SKIPPED_CLASSES.set(skippedClasses);
+	}
+	
+	/**
+	 * Within transaction a document saved before will be committed in its actual state, so there is no need to save it again
+	 * @param doc {@link ODocument} to check
+	 * @return true if the document instance is already registered in current transaction
+	 */
+	@SuppressWarnings("deprecation")
+	private static boolean isRegisteredInTransaction(ODocument doc)
+	{
+		ODatabaseDocument db = doc.getDatabase();
+		if(db==null || !db.getTransaction().isActive()) return false;
+		ORecordOperation operation = db.getTransaction().getRecordEntry(doc.getIdentity());
+		return operation!=null 
+				&& operation.type!=ORecordOperation.DELETED 
+				&& operation.getRecord()==doc;
+	}
+	
+	private PendingLinks getPendingLinks(ODocument doc)
+	{
+		ORID rid = doc.getIdentity();
+		Object key = rid.isValid()?rid.copy():doc;
+		@SuppressWarnings("deprecation")
+		ODatabaseDocument db = ODatabaseRecordThreadLocal.INSTANCE.get();
+		Map<Object, PendingLinks> pendingLinks = db.getTransaction().isActive()
+				?CommitActions.runBeforeCommit(db, TransactionLinks.class, new TransactionLinks()).pendingLinks
+				:PENDING_LINKS.get();
+		PendingLinks ret = pendingLinks.get(key);
+		if(ret==null)
+		{
+			ret = new PendingLinks(doc);
+			pendingLinks.put(key, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Apply collected changes of multi-value links: one load and one save per changed document
+	 * @param pendingLinks collected changes: cleared before applying
+	 */
+	private static void applyPendingLinks(Map<Object, PendingLinks> pendingLinks)
+	{
+		if(pendingLinks.isEmpty()) return;
+		List<PendingLinks> toApply = new ArrayList<PendingLinks>(pendingLinks.values());
+		pendingLinks.clear();
+		for (PendingLinks links : toApply)
+		{
+			links.apply();
 		}
 	}
 	
@@ -107,16 +294,11 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 		return DISTRIBUTED_EXECUTION_MODE.TARGET_NODE;
 	}
 	
-	private LoadingCache<OClass, Collection<OProperty>> getCache()
+	private Map<String, HooksMetadata.InverseLink> getInverseLinks(OClass oClass)
 	{
 		@SuppressWarnings("deprecation")
-		int version = ODatabaseRecordThreadLocal.INSTANCE.get().getMetadata().getSchema().getVersion();
-		if(version>currentSchemaVersion)
-		{
-			CACHE.invalidateAll();
-			currentSchemaVersion=version;
-		}
-		return CACHE;
+		ODatabaseDocument db = ODatabaseRecordThreadLocal.INSTANCE.get();
+		return HooksMetadata.get(db).getInverseLinks(oClass);
 	}
 
 	@Override
@@ -127,13 +309,12 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 			{
 				OClass thisOClass = doc.getSchemaClass();
 //				if(thisOClass==null) return;
-				Collection<OProperty> refProperties = getCache().get(doc.getSchemaClass());
-				for (OProperty oProperty : refProperties)
+				for (HooksMetadata.InverseLink link : getInverseLinks(thisOClass).values())
 				{
-					OProperty inverseProperty = CustomAttributes.PROP_INVERSE.getValue(oProperty);
-					Object value = doc.field(oProperty.getName());
+					OProperty inverseProperty = link.getInverseProperty();
+					Object value = doc.field(link.getName());
 					if(value instanceof OIdentifiable) value = Arrays.asList(value);
-					if(inverseProperty!=null && value!=null && value instanceof Collection)
+					if(value!=null && value instanceof Collection)
 					{
 						for(Object otherObj: (Collection<?>)value)
 						{
@@ -145,9 +326,6 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 						}
 					}
 				}
-			} catch (ExecutionException e)
-			{
-				LOG.error("Can't update reverse links onCreate", e);
 			}
 			finally
 			{
@@ -166,16 +344,17 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 			{
 				OClass thisOClass = doc.getSchemaClass();
 //				if(thisOClass==null) return;
-				Collection<OProperty> refProperties = getCache().get(thisOClass);
-				if(refProperties!=null && refProperties.size()>0)
+				Map<String, HooksMetadata.InverseLink> inverseLinks = getInverseLinks(thisOClass);
+				if(!inverseLinks.isEmpty())
 				{
 					String[] changedFields = doc.getDirtyFields();
 					for (String field : changedFields)
 					{
-						OProperty changedProperty = thisOClass.getProperty(field);
-						if(refProperties.contains(changedProperty))
+						HooksMetadata.InverseLink link = inverseLinks.get(field);
+						if(link!=null)
 						{
-							OProperty inverseProperty = CustomAttributes.PROP_INVERSE.getValue(changedProperty);
+							OProperty changedProperty = link.getProperty();
+							OProperty inverseProperty = link.getInverseProperty();
 							if(changedProperty.getType().isMultiValue())
 							{
 								OMultiValueChangeTimeLine<Object, Object> timeline = doc.getCollectionTimeLine(field);
@@ -242,9 +421,6 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 					}
 				}
 				
-			} catch (ExecutionException e)
-			{
-				LOG.error("Can't update reverse links onUpdate", e);
 			}
 			finally
 			{
@@ -261,13 +437,12 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 			{
 				OClass thisOClass = doc.getSchemaClass();
 //				if(thisOClass==null) return;
-				Collection<OProperty> refProperties = getCache().get(thisOClass);
-				for (OProperty oProperty : refProperties)
+				for (HooksMetadata.InverseLink link : getInverseLinks(thisOClass).values())
 				{
-					OProperty inverseProperty = CustomAttributes.PROP_INVERSE.getValue(oProperty);
-					Object value = doc.field(oProperty.getName());
+					OProperty inverseProperty = link.getInverseProperty();
+					Object value = doc.field(link.getName());
 					if(value instanceof OIdentifiable) value = Arrays.asList(value);
-					if(inverseProperty!=null && value!=null && value instanceof Collection)
+					if(value!=null && value instanceof Collection)
 					{
 						for(Object otherObj: (Collection<?>)value)
 						{
@@ -279,9 +454,6 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 						}
 					}
 				}
-			} catch (ExecutionException e)
-			{
-				LOG.error("Can't update reverse links onDelete", e);
 			}
 			finally
 			{
@@ -299,19 +471,7 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 			Object wrappedValue = value.getIdentity().isPersistent()?value.getIdentity():value;
 			if(property.getType().isMultiValue())
 			{
-				Collection<Object> objects = doc.field(field);
-				if(objects==null)
-				{
-					objects = new ArrayList<Object>();
-					objects.add(wrappedValue);
-					doc.field(field, objects);
-				}
-				else
-				{
-					objects.add(wrappedValue);
-				}
-				//It's safe of fields with multivalue
-				saveOutOfHook(doc);
+				getPendingLinks(doc).add(field, wrappedValue, true);
 			}
 			else
 			{
@@ -330,13 +490,7 @@ public class ReferencesConsistencyHook extends ODocumentHookAbstract
 			Object wrappedValue = value.getIdentity().isPersistent()?value.getIdentity():value;
 			if(property.getType().isMultiValue())
 			{
-				Collection<Object> objects = doc.field(field);
-				if(objects!=null && objects.remove(wrappedValue))
-				{
-					doc.field(field, objects);
-					//It's safe for multivalue docs
-					saveOutOfHook(doc);
-				}
+				getPendingLinks(doc).add(field, wrappedValue, false);
 			}
 			else
 			{
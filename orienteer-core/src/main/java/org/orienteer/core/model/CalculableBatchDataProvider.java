@@ -0,0 +1,82 @@
+package org.orienteer.core.model;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortState;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.ISortableDataProvider;
+import org.apache.wicket.model.IModel;
+import org.orienteer.core.hook.CalculablePropertiesHook;
+
+import com.google.common.collect.Lists;
+
+/**
+ * {@link ISortableDataProvider} which calculates calculable properties for a whole page of documents at once.
+ * Delegates everything else to the wrapped data provider.
+ *
+ * @param <T> the type of an objects
+ * @param <S> the type of the sorting parameter
+ */
+public class CalculableBatchDataProvider<T, S> implements ISortableDataProvider<T, S>, IDeferredSizeAware
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final ISortableDataProvider<T, S> delegate;
+	
+	public CalculableBatchDataProvider(ISortableDataProvider<T, S> delegate)
+	{
+		this.delegate = delegate;
+	}
+	
+	public ISortableDataProvider<T, S> getDelegate()
+	{
+		return delegate;
+	}
+
+	@Override
+	public Iterator<? extends T> iterator(long first, long count) {
+		List<T> page;
+		CalculablePropertiesHook.startBatch();
+		try
+		{
+			page = Lists.<T>newArrayList(delegate.iterator(first, count));
+		}
+		finally
+		{
+			CalculablePropertiesHook.finishBatch();
+		}
+		return page.iterator();
+	}
+
+	@Override
+	public long size() {
+		return delegate.size();
+	}
+
+	@Override
+	public boolean isSizeDeferrable() {
+		return !(delegate instanceof IDeferredSizeAware) || ((IDeferredSizeAware)delegate).isSizeDeferrable();
+	}
+
+	@Override
+	public Serializable getSizeKey() {
+		return delegate instanceof IDeferredSizeAware?((IDeferredSizeAware)delegate).getSizeKey():null;
+	}
+
+	@Override
+	public IModel<T> model(T object) {
+		return delegate.model(object);
+	}
+
+	@Override
+	public void detach() {
+		delegate.detach();
+	}
+
+	@Override
+	public ISortState<S> getSortState() {
+		return delegate.getSortState();
+	}
+
+}
@@ -0,0 +1,228 @@
+package org.orienteer.core.model;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortState;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.ISortableDataProvider;
+import org.apache.wicket.model.IModel;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.metadata.security.OUser;
+
+/**
+ * {@link ISortableDataProvider} which doesn't block rendering by counting of a total size.
+ * While exact size is unknown, {@link #UNKNOWN_SIZE} is returned and exact size should be requested later
+ * by {@link #calculateSize()}: for example, by a separate AJAX request.
+ * Exact size is kept for specified time to live. If a key of a query is known (see {@link IDeferredSizeAware} and
+ * {@link #setSizeKeyModel(IModel)}), exact size is shared between all data providers with the same key.
+ * Providers which report cheap size through {@link IDeferredSizeAware} are counted right away.
+ * Delegates everything else to the wrapped data provider.
+ *
+ * @param <T> the type of an objects
+ * @param <S> the type of the sorting parameter
+ */
+public class DeferredCountDataProvider<T, S> implements ISortableDataProvider<T, S>, IDeferredSizeAware
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Size which is reported while exact size is unknown
+	 */
+	public static final long UNKNOWN_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * Exact size and time of its calculation
+	 */
+	private static final class SizeEntry implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+		private final long size;
+		private final long timestamp;
+
+		public SizeEntry(long size)
+		{
+			this.size = size;
+			this.timestamp = System.currentTimeMillis();
+		}
+	}
+
+	private static final Cache<String, SizeEntry> SHARED_SIZES = CacheBuilder.newBuilder()
+																	.maximumSize(1000)
+																	.expireAfterWrite(1, TimeUnit.HOURS)
+																	.build();
+
+	private final ISortableDataProvider<T, S> delegate;
+	private final long timeToLive;
+	private IModel<? extends Serializable> sizeKeyModel;
+	private SizeEntry size;
+	/**
+	 * Size learned from an incomplete page: it's applied only on detach,
+	 * because the table has already cached {@link #UNKNOWN_SIZE} for the current request
+	 */
+	private transient Long pendingSize;
+	private transient String pendingSizeKey;
+	/**
+	 * Whether size is known is decided once per request, so all components of a table see the same state
+	 */
+	private transient Boolean sizeKnownInRequest;
+
+	/**
+	 * @param delegate data provider to wrap
+	 * @param timeToLive time in milliseconds to keep exact size. Deferring is disabled if it's not positive
+	 */
+	public DeferredCountDataProvider(ISortableDataProvider<T, S> delegate, long timeToLive)
+	{
+		this.delegate = delegate;
+		this.timeToLive = timeToLive;
+	}
+
+	public ISortableDataProvider<T, S> getDelegate()
+	{
+		return delegate;
+	}
+
+	/**
+	 * Set model of a key of a query and its parameters: exact size is shared between data providers with the same key
+	 * @param sizeKeyModel model of a key
+	 * @return this data provider
+	 */
+	public DeferredCountDataProvider<T, S> setSizeKeyModel(IModel<? extends Serializable> sizeKeyModel)
+	{
+		this.sizeKeyModel = sizeKeyModel;
+		return this;
+	}
+
+	public boolean isDeferred()
+	{
+		return timeToLive>0 && isSizeDeferrable();
+	}
+
+	@Override
+	public boolean isSizeDeferrable() {
+		return !(delegate instanceof IDeferredSizeAware) || ((IDeferredSizeAware)delegate).isSizeDeferrable();
+	}
+
+	@Override
+	public Serializable getSizeKey() {
+		if(sizeKeyModel!=null) return sizeKeyModel.getObject();
+		return delegate instanceof IDeferredSizeAware?((IDeferredSizeAware)delegate).getSizeKey():null;
+	}
+
+	@Override
+	public Iterator<? extends T> iterator(long first, long count) {
+		List<T> page = Lists.<T>newArrayList(delegate.iterator(first, count));
+		//Incomplete page gives exact size for free
+		if(isDeferred() && !isSizeKnown() && page.size()<count && (first==0 || page.size()>0))
+		{
+			pendingSize = first+page.size();
+			pendingSizeKey = getSharedSizeKey();
+		}
+		return page.iterator();
+	}
+
+	@Override
+	public long size() {
+		if(!isDeferred()) return delegate.size();
+		return isSizeKnown()?size.size:UNKNOWN_SIZE;
+	}
+
+	/**
+	 * @return true if exact size was calculated and it's not yet expired
+	 */
+	public boolean isSizeKnown()
+	{
+		if(!isDeferred()) return true;
+		if(sizeKnownInRequest==null)
+		{
+			if(!isActual(size))
+			{
+				String key = getSharedSizeKey();
+				size = key!=null?SHARED_SIZES.getIfPresent(key):null;
+			}
+			sizeKnownInRequest = isActual(size);
+		}
+		return sizeKnownInRequest;
+	}
+
+	private boolean isActual(SizeEntry entry)
+	{
+		return entry!=null && System.currentTimeMillis()-entry.timestamp<timeToLive;
+	}
+
+	/**
+	 * Calculate and keep exact size
+	 * @return exact size
+	 */
+	public long calculateSize()
+	{
+		long ret = delegate.size();
+		setSize(ret, getSharedSizeKey());
+		sizeKnownInRequest = true;
+		return ret;
+	}
+
+	/**
+	 * Forget exact size: for example, after modification of data
+	 */
+	public void resetSize()
+	{
+		size = null;
+		sizeKnownInRequest = null;
+		pendingSize = null;
+		pendingSizeKey = null;
+		String key = getSharedSizeKey();
+		if(key!=null) SHARED_SIZES.invalidate(key);
+	}
+
+	private void setSize(long size, String sharedKey)
+	{
+		this.size = new SizeEntry(size);
+		if(sharedKey!=null) SHARED_SIZES.put(sharedKey, this.size);
+	}
+
+	/**
+	 * @return key to share exact size: sizes are shared only within the same database and user,
+	 * 		   because record level security might affect them
+	 */
+	private String getSharedSizeKey()
+	{
+		Serializable key = getSizeKey();
+		if(key==null) return null;
+		ODatabaseDocument db = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+		if(db==null) return "|"+key;
+		if(db.isClosed()) return null;
+		OUser user = db.getUser();
+		return db.getURL()+"|"+(user!=null?user.getName():"")+"|"+key;
+	}
+
+	@Override
+	public IModel<T> model(T object) {
+		return delegate.model(object);
+	}
+
+	@Override
+	public void detach() {
+		if(pendingSize!=null)
+		{
+			setSize(pendingSize, pendingSizeKey);
+			pendingSize = null;
+			pendingSizeKey = null;
+		}
+		sizeKnownInRequest = null;
+		delegate.detach();
+		if(sizeKeyModel!=null) sizeKeyModel.detach();
+	}
+
+	@Override
+	public ISortState<S> getSortState() {
+		return delegate.getSortState();
+	}
+
+}
@@ -0,0 +1,19 @@
+package org.orienteer.core.model;
+
+import java.io.Serializable;
+
+/**
+ * Interface for data providers which can tell {@link DeferredCountDataProvider} how to deal with their size
+ */
+public interface IDeferredSizeAware
+{
+	/**
+	 * @return true if calculation of size is expensive and might be deferred to a separate request
+	 */
+	public boolean isSizeDeferrable();
+
+	/**
+	 * @return key of a query and its parameters to share calculated size between data providers or null
+	 */
+	public Serializable getSizeKey();
+}
@@ -0,0 +1,195 @@
+package org.orienteer.core.model;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.apache.wicket.model.IModel;
+
+import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
+import ru.ydn.wicket.wicketorientdb.model.OClassModel;
+import ru.ydn.wicket.wicketorientdb.model.ODocumentModel;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.security.OSecurityShared;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Data provider for all documents of a class.
+ * If no sorting is specified, pages are loaded by RID cursor: a page adjacent to an already loaded one
+ * is requested by the last/first seen RID instead of SKIP, so browsing of deep pages costs the same as the first one.
+ * Known positions are forgotten as soon as number of documents in the class is changed.
+ * Size is taken from class counters if it's allowed by security and is calculated once per request.
+ */
+public class OClassBrowseDataProvider extends SortableDataProvider<ODocument, String> implements IDeferredSizeAware
+{
+	private static final long serialVersionUID = 1L;
+	private static final int MAX_ANCHORS = 200;
+
+	private final IModel<OClass> classModel;
+	/**
+	 * Known RIDs of documents at specific positions: first and last documents of loaded pages
+	 */
+	private final TreeMap<Long, ORID> anchors = new TreeMap<Long, ORID>();
+	/**
+	 * Number of documents in the class when anchors were recorded
+	 */
+	private long anchorsCount = -1;
+	private transient Long size;
+
+	public OClassBrowseDataProvider(OClass oClass)
+	{
+		this(new OClassModel(oClass));
+	}
+
+	public OClassBrowseDataProvider(IModel<OClass> classModel)
+	{
+		this.classModel = classModel;
+	}
+
+	@Override
+	public Iterator<? extends ODocument> iterator(long first, long count) {
+		OClass oClass = classModel.getObject();
+		if(oClass==null || count<=0) return Collections.<ODocument>emptyIterator();
+		String className = oClass.getName();
+		SortParam<String> sort = getSort();
+		if(sort!=null && sort.getProperty()!=null)
+		{
+			return query("select from "+className+" order by "+sort.getProperty()+(sort.isAscending()?" asc":" desc")
+							+" skip "+first+" limit "+count, first, false).iterator();
+		}
+		validateAnchors(oClass);
+		List<ODocument> ret;
+		ORID previous = anchors.get(first-1);
+		ORID next = anchors.get(first+count);
+		if(first==0)
+		{
+			ret = query("select from "+className+" order by @rid asc limit "+count, first, false);
+		}
+		else if(previous!=null)
+		{
+			ret = query("select from "+className+" where @rid > "+previous+" order by @rid asc limit "+count, first, false);
+		}
+		else if(next!=null)
+		{
+			ret = query("select from "+className+" where @rid < "+next+" order by @rid desc limit "+count, first, true);
+		}
+		else if(first>=size())
+		{
+			ret = Collections.emptyList();
+		}
+		else if(first+count>=size())
+		{
+			ret = query("select from "+className+" order by @rid desc limit "+(size()-first), first, true);
+		}
+		else
+		{
+			ret = query("select from "+className+" order by @rid asc skip "+first+" limit "+count, first, false);
+		}
+		return ret.iterator();
+	}
+
+	private List<ODocument> query(String sql, long first, boolean reverse)
+	{
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		List<ODocument> ret = db.query(new OSQLSynchQuery<ODocument>(sql));
+		if(reverse) Collections.reverse(ret);
+		if(!ret.isEmpty() && getSort()==null)
+		{
+			if(anchors.size()>MAX_ANCHORS) anchors.clear();
+			anchors.put(first, ret.get(0).getIdentity().copy());
+			anchors.put(first+ret.size()-1, ret.get(ret.size()-1).getIdentity().copy());
+		}
+		return ret;
+	}
+
+	/**
+	 * Positions of documents are shifted by creation or deletion of documents, so anchors are dropped if count was changed.
+	 * Class counters are cheap and are changed for any creation or deletion, so they are used regardless of security
+	 * @param oClass class of documents
+	 */
+	private void validateAnchors(OClass oClass)
+	{
+		long count = oClass.count(true);
+		if(count!=anchorsCount)
+		{
+			anchors.clear();
+			anchorsCount = count;
+		}
+	}
+
+	/**
+	 * @param oClass class to check
+	 * @return true if record level security might be applied to documents of the class or of its subclasses
+	 */
+	private static boolean isRestricted(OClass oClass)
+	{
+		if(oClass.isSubClassOf(OSecurityShared.RESTRICTED_CLASSNAME)) return true;
+		for(OClass subClass : oClass.getAllSubclasses())
+		{
+			if(subClass.isSubClassOf(OSecurityShared.RESTRICTED_CLASSNAME)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public long size() {
+		if(size==null)
+		{
+			OClass oClass = classModel.getObject();
+			if(oClass==null) size = 0L;
+			else if(isRestricted(oClass))
+			{
+				//Class counters don't respect record level security
+				List<ODocument> ret = OrientDbWebSession.get().getDatabase()
+										.query(new OSQLSynchQuery<ODocument>("select count(*) as count from "+oClass.getName()));
+				Number count = ret!=null && !ret.isEmpty()?(Number)ret.get(0).field("count"):null;
+				size = count!=null?count.longValue():0L;
+			}
+			else size = oClass.count(true);
+			if(oClass!=null) validateAnchors(oClass);
+			if(!anchors.isEmpty() && anchors.lastKey()>=size) anchors.clear();
+		}
+		return size;
+	}
+
+	@Override
+	public boolean isSizeDeferrable() {
+		//Class counters are cheap: only counting with respect to record level security requires a query
+		OClass oClass = classModel.getObject();
+		return oClass!=null && isRestricted(oClass);
+	}
+
+	@Override
+	public Serializable getSizeKey() {
+		OClass oClass = classModel.getObject();
+		return oClass!=null?oClass.getName():null;
+	}
+
+	@Override
+	public IModel<ODocument> model(ODocument object) {
+		return new ODocumentModel(object);
+	}
+
+	@Override
+	public void detach() {
+		size = null;
+		classModel.detach();
+	}
+
+	/**
+	 * Forget known positions of documents: for example, after massive changes
+	 */
+	public void resetAnchors()
+	{
+		anchors.clear();
+		anchorsCount = -1;
+	}
+}
@@ -0,0 +1,43 @@
+package org.orienteer.core.model;
+
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+
+/**
+ * Model of a key of a query and actual values of its parameters.
+ * Should be used to share calculated size between data providers: see {@link DeferredCountDataProvider#setSizeKeyModel(IModel)}
+ */
+public class QuerySizeKeyModel extends AbstractReadOnlyModel<String>
+{
+	private static final long serialVersionUID = 1L;
+	private final String sql;
+	private final IModel<?>[] parameters;
+
+	public QuerySizeKeyModel(String sql, IModel<?>... parameters)
+	{
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	@Override
+	public String getObject() {
+		StringBuilder sb = new StringBuilder(sql);
+		for(IModel<?> parameter : parameters)
+		{
+			Object value = parameter!=null?parameter.getObject():null;
+			if(value instanceof OIdentifiable) value = ((OIdentifiable)value).getIdentity();
+			sb.append('|').append(value);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public void detach() {
+		for(IModel<?> parameter : parameters)
+		{
+			if(parameter!=null) parameter.detach();
+		}
+	}
+}
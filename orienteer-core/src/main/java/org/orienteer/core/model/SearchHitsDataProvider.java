@@ -0,0 +1,81 @@
+package org.orienteer.core.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.apache.wicket.model.IModel;
+import org.orienteer.core.service.SearchResults;
+
+import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
+import ru.ydn.wicket.wicketorientdb.model.ODocumentModel;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Data provider for ranked hits of a specific class from {@link SearchResults}.
+ * Only documents of a requested page are loaded.
+ */
+public class SearchHitsDataProvider extends SortableDataProvider<ODocument, String> implements IDeferredSizeAware
+{
+	private static final long serialVersionUID = 1L;
+	private final IModel<SearchResults> resultsModel;
+	private final String className;
+
+	public SearchHitsDataProvider(IModel<SearchResults> resultsModel, String className)
+	{
+		this.resultsModel = resultsModel;
+		this.className = className;
+	}
+
+	protected List<ORID> getHits()
+	{
+		SearchResults results = resultsModel.getObject();
+		return results!=null?results.getHits(className):new ArrayList<ORID>();
+	}
+
+	@Override
+	public Iterator<? extends ODocument> iterator(long first, long count) {
+		List<ORID> hits = getHits();
+		int from = (int)Math.min(first, hits.size());
+		int to = (int)Math.min(first+count, hits.size());
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		List<ODocument> page = new ArrayList<ODocument>(to-from);
+		for(ORID rid : hits.subList(from, to))
+		{
+			ODocument doc = db.load(rid);
+			if(doc!=null) page.add(doc);
+		}
+		return page.iterator();
+	}
+
+	@Override
+	public long size() {
+		return getHits().size();
+	}
+
+	@Override
+	public boolean isSizeDeferrable() {
+		//Hits are already in memory
+		return false;
+	}
+
+	@Override
+	public Serializable getSizeKey() {
+		return null;
+	}
+
+	@Override
+	public IModel<ODocument> model(ODocument object) {
+		return new ODocumentModel(object);
+	}
+
+	@Override
+	public void detach() {
+		resultsModel.detach();
+	}
+}
@@ -0,0 +1,322 @@
+package org.orienteer.core.module;
+
+import static org.orienteer.core.module.OrienteerLocalizationModule.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.util.string.Strings;
+import org.orienteer.core.OrienteerWebApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.ydn.wicket.wicketorientdb.utils.DBClosure;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * In-memory store of {@link OrienteerLocalizationModule#OCLASS_LOCALIZATION} documents.
+ * Store is preloaded on application initialization and then updated incrementally
+ * by {@link OrienteerLocalizationModule.LocalizationInvalidationHook} after commit of changes.
+ * Requests for missing localizations are registered in background in batches till {@link #shutdown()}.
+ */
+@Singleton
+public class LocalizationStore
+{
+	private static final Logger LOG = LoggerFactory.getLogger(LocalizationStore.class);
+	private static final long REGISTRATION_DELAY_MS = 1000;
+	private static final Localization[] EMPTY = new Localization[0];
+
+	private final ConcurrentMap<String, Localization[]> byKey = new ConcurrentHashMap<String, Localization[]>();
+	private final ConcurrentMap<ORID, Localization> byRid = new ConcurrentHashMap<ORID, Localization>();
+	private volatile boolean loaded = false;
+
+	private final Set<LocalizationKey> requested = Collections.newSetFromMap(new ConcurrentHashMap<LocalizationKey, Boolean>());
+	private final ConcurrentLinkedQueue<LocalizationKey> toRegister = new ConcurrentLinkedQueue<LocalizationKey>();
+	private final AtomicBoolean registrationScheduled = new AtomicBoolean(false);
+	private final ScheduledExecutorService executor =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+																.setDaemon(true)
+																.setNameFormat("orienteer-localization-%d")
+																.build());
+
+	/**
+	 * Key of a localization: key, language, style and variation
+	 */
+	private static class LocalizationKey
+	{
+		protected final String key;
+		protected final String lang;
+		protected final String style;
+		protected final String variation;
+
+		public LocalizationKey(String key, String lang, String style, String variation)
+		{
+			this.key = key;
+			this.lang = lang;
+			this.style = style;
+			this.variation = variation;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(key, lang, style, variation);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (obj == null || getClass() != obj.getClass()) return false;
+			LocalizationKey other = (LocalizationKey) obj;
+			return Objects.equals(key, other.key)
+					&& Objects.equals(lang, other.lang)
+					&& Objects.equals(style, other.style)
+					&& Objects.equals(variation, other.variation);
+		}
+	}
+
+	/**
+	 * Compact immutable copy of a localization document
+	 */
+	private static class Localization extends LocalizationKey
+	{
+		private final ORID rid;
+		private final boolean active;
+		private final String value;
+
+		public Localization(ODocument doc)
+		{
+			super((String)doc.field(OPROPERTY_KEY), (String)doc.field(OPROPERTY_LANG),
+				  (String)doc.field(OPROPERTY_STYLE), (String)doc.field(OPROPERTY_VARIATION));
+			this.rid = doc.getIdentity().copy();
+			Boolean active = doc.field(OPROPERTY_ACTIVE);
+			this.active = active!=null && active;
+			this.value = doc.field(OPROPERTY_VALUE);
+		}
+	}
+
+	/**
+	 * Load all localizations from a database
+	 * @param db {@link ODatabaseDocument} to load localizations from
+	 */
+	public synchronized void load(ODatabaseDocument db)
+	{
+		byKey.clear();
+		byRid.clear();
+		if(db.getMetadata().getSchema().existsClass(OCLASS_LOCALIZATION))
+		{
+			for(ODocument doc : db.browseClass(OCLASS_LOCALIZATION))
+			{
+				add(new Localization(doc));
+			}
+		}
+		loaded = true;
+	}
+
+	public boolean isLoaded()
+	{
+		return loaded;
+	}
+
+	/**
+	 * Find the best localization for specified parameters.
+	 * If there is no localization with exactly the same parameters, it will be registered for further translation.
+	 * @param key key of a localization
+	 * @param language language of a localization
+	 * @param style style of a localization
+	 * @param variation variation of a localization
+	 * @return localized string or null
+	 */
+	public String getString(String key, String language, String style, String variation)
+	{
+		if(Strings.isEmpty(key)) return null;
+		Localization[] candidates = byKey.get(key);
+		if(candidates==null) candidates = EMPTY;
+		Localization bestCandidate = null;
+		int bestCandidateScore = -1;
+		boolean fullMatchPresent=false;
+		for (Localization candidate : candidates)
+		{
+			int score = 0;
+			if(Strings.isEqual(language, candidate.lang))score|=1<<2;
+			if(Strings.isEqual(style, candidate.style))score|=1<<1;
+			if(Strings.isEqual(variation, candidate.variation))score|=1;
+			if(score==7) fullMatchPresent=true;
+			if(!candidate.active) score=-1;
+			if(score>bestCandidateScore)
+			{
+				bestCandidate = candidate;
+				bestCandidateScore=score;
+			}
+		}
+		//Nothing can be checked for presence till the store is loaded
+		if(!fullMatchPresent && loaded) requestRegistration(new LocalizationKey(key, language, style, variation));
+		return bestCandidate!=null?bestCandidate.value:null;
+	}
+
+	/**
+	 * Put new or updated localization document into the store
+	 * @param doc localization {@link ODocument}
+	 * @return true if resolved localized strings might be changed
+	 */
+	public synchronized boolean put(ODocument doc)
+	{
+		if(!loaded) return true;
+		Localization localization = new Localization(doc);
+		Localization old = remove(localization.rid);
+		add(localization);
+		return localization.active || (old!=null && old.active);
+	}
+
+	/**
+	 * Remove localization document from the store
+	 * @param doc localization {@link ODocument}
+	 * @return true if resolved localized strings might be changed
+	 */
+	public synchronized boolean remove(ODocument doc)
+	{
+		if(!loaded) return true;
+		Localization old = remove(doc.getIdentity());
+		return old==null || old.active;
+	}
+
+	private void add(Localization localization)
+	{
+		if(localization.key==null) return;
+		Localization[] current = byKey.get(localization.key);
+		Localization[] updated;
+		if(current==null) updated = new Localization[]{localization};
+		else
+		{
+			updated = Arrays.copyOf(current, current.length+1);
+			updated[current.length] = localization;
+		}
+		byKey.put(localization.key, updated);
+		byRid.put(localization.rid, localization);
+	}
+
+	private Localization remove(ORID rid)
+	{
+		Localization old = byRid.remove(rid);
+		if(old!=null && old.key!=null)
+		{
+			Localization[] current = byKey.get(old.key);
+			if(current!=null)
+			{
+				List<Localization> updated = new ArrayList<Localization>(current.length);
+				for (Localization localization : current)
+				{
+					if(localization!=old) updated.add(localization);
+				}
+				if(updated.isEmpty()) byKey.remove(old.key);
+				else byKey.put(old.key, updated.toArray(new Localization[updated.size()]));
+			}
+		}
+		return old;
+	}
+
+	private void requestRegistration(LocalizationKey key)
+	{
+		if(!requested.add(key)) return;
+		toRegister.add(key);
+		if(registrationScheduled.compareAndSet(false, true))
+		{
+			final Application app = OrienteerWebApplication.lookupApplication();
+			if(app==null)
+			{
+				registrationScheduled.set(false);
+				return;
+			}
+			try
+			{
+				executor.schedule(new Runnable() {
+	
+					@Override
+					public void run() {
+						registrationScheduled.set(false);
+						registerRequested(app);
+					}
+				}, REGISTRATION_DELAY_MS, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e)
+			{
+				//Store is already shut down
+				registrationScheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Stop background registration of requested localizations
+	 */
+	public void shutdown()
+	{
+		executor.shutdownNow();
+		toRegister.clear();
+		requested.clear();
+	}
+
+	private void registerRequested(Application app)
+	{
+		final List<LocalizationKey> keys = new ArrayList<LocalizationKey>();
+		LocalizationKey key;
+		while((key=toRegister.poll())!=null) keys.add(key);
+		if(keys.isEmpty()) return;
+		try
+		{
+			ThreadContext.setApplication(app);
+			new DBClosure<Void>() {
+
+				@Override
+				protected Void execute(ODatabaseDocument db) {
+					db.begin();
+					try
+					{
+						for (LocalizationKey key : keys)
+						{
+							ODocument doc = new ODocument(OCLASS_LOCALIZATION);
+							doc.field(OPROPERTY_KEY, key.key);
+							doc.field(OPROPERTY_LANG, key.lang);
+							doc.field(OPROPERTY_STYLE, key.style);
+							doc.field(OPROPERTY_VARIATION, key.variation);
+							doc.field(OPROPERTY_ACTIVE, false);
+							doc.save();
+						}
+						db.commit();
+					} catch (RuntimeException e)
+					{
+						db.rollback();
+						throw e;
+					}
+					return null;
+				}
+			}.execute();
+		} catch (Exception e)
+		{
+			LOG.error("Can't register requested localizations", e);
+		}
+		finally
+		{
+			//Registered localizations are already in the store, failed ones can be requested again
+			requested.removeAll(keys);
+			ThreadContext.detach();
+		}
+	}
+}
@@ -8,6 +8,7 @@ import org.orienteer.core.component.widget.AbstractHtmlJsPaneWidget;
 import org.orienteer.core.component.widget.document.CalculatedDocumentsWidget;
 import org.orienteer.core.component.widget.document.ExternalPageWidget;
 import org.orienteer.core.util.OSchemaHelper;
+import org.orienteer.core.widget.DefaultDashboardManager;
 import org.orienteer.core.widget.IWidgetType;
 import org.orienteer.core.widget.IWidgetTypesRegistry;
 import org.slf4j.Logger;
@@ -48,6 +49,7 @@ public class OWidgetsModule extends AbstractOrienteerModule {
 	public static final String OPROPERTY_SIZE_X = "sizeX";
 	public static final String OPROPERTY_SIZE_Y = "sizeY";
 	public static final String OPROPERTY_HIDDEN = "hidden";
+	public static final String OPROPERTY_LAZY = "lazy";
 	public static final String OPROPERTY_PAGE_URL = "pageUrl";
 	public static final String OPROPERTY_STYLE = "style";
 	
@@ -55,7 +57,7 @@ public class OWidgetsModule extends AbstractOrienteerModule {
 	private IWidgetTypesRegistry registry;
 	
 	public OWidgetsModule() {
-		super("widgets", 3);
+		super("widgets", 4);
 	}
 	
 	@Override
@@ -80,6 +82,7 @@ public class OWidgetsModule extends AbstractOrienteerModule {
 		helper.setupRelationship(OCLASS_DASHBOARD, OPROPERTY_WIDGETS, OCLASS_WIDGET, OPROPERTY_DASHBOARD);
 		installWidgetsSchemaV2(db); 
 		installWidgetsSchemaV3(db);
+		installWidgetsSchemaV4(db);
 	}
 	
 	@Override
@@ -91,12 +94,15 @@ public class OWidgetsModule extends AbstractOrienteerModule {
 				installWidgetsSchemaV2(db);
 			case 3:
 				installWidgetsSchemaV3(db);
+			case 4:
+				installWidgetsSchemaV4(db);
 		}
 		if(updateTo<newVersion) onUpdate(app, db, updateTo, newVersion);
 	}
 	
 	@Override
 	public void onInitialize(OrienteerWebApplication app, ODatabaseDocument db) {
+		app.getOrientDbSettings().getORecordHooks().add(DefaultDashboardManager.DashboardInvalidationHook.class);
 		if(!checkWidgetClassesInstallation(db)) {
 			LOG.error("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
 			LOG.error("!!! NOT ALL WIDGET CLASSES WERE INSTALLED !!!");
@@ -155,4 +161,10 @@ public class OWidgetsModule extends AbstractOrienteerModule {
 		helper.oClass(OCLASS_WIDGET)
 			.oProperty(OPROPERTY_TITLE, OType.EMBEDDEDMAP, 0).assignVisualization("localization");
 	}
+	
+	protected void installWidgetsSchemaV4(ODatabaseDocument db) {
+		OSchemaHelper helper = OSchemaHelper.bind(db);
+		helper.oClass(OCLASS_WIDGET)
+			.oProperty(OPROPERTY_LAZY, OType.BOOLEAN, 70);
+	}
 }
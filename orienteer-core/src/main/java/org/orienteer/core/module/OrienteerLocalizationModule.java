@@ -1,20 +1,19 @@
 package org.orienteer.core.module;
 
-import java.util.List;
 import java.util.Locale;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.resource.loader.IStringResourceLoader;
-import org.apache.wicket.util.string.Strings;
 import org.orienteer.core.CustomAttributes;
 import org.orienteer.core.OrienteerWebApplication;
 import org.orienteer.core.OrienteerWebSession;
+import org.orienteer.core.hook.CommitActions;
 import org.orienteer.core.util.OSchemaHelper;
 
 import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
-import ru.ydn.wicket.wicketorientdb.utils.DBClosure;
 
 import com.google.common.primitives.Booleans;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
@@ -26,7 +25,6 @@ import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.metadata.schema.OClass.INDEX_TYPE;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 
 /**
  * {@link IOrienteerModule} to simplify localization of an application
@@ -55,6 +53,12 @@ public class OrienteerLocalizationModule extends AbstractOrienteerModule
 			setIncludeClasses(OCLASS_LOCALIZATION);
 		}
 		
+		private LocalizationStore getStore()
+		{
+			OrienteerWebApplication app = OrienteerWebApplication.lookupApplication();
+			return app!=null?app.getServiceInstance(LocalizationStore.class):null;
+		}
+		
 		private void invalidateCache()
 		{
 			OrienteerWebApplication app = OrienteerWebApplication.lookupApplication();
@@ -64,19 +68,36 @@ public class OrienteerLocalizationModule extends AbstractOrienteerModule
 			}
 		}
 		
+		/**
+		 * Apply change of a localization to the store after commit: rolled back changes should never be visible
+		 * @param iDocument changed localization
+		 * @param deleted true if localization was deleted
+		 */
+		private void applyOnCommit(final ODocument iDocument, final boolean deleted)
+		{
+			CommitActions.runOnCommit(iDocument.getDatabase(), new Runnable() {
+				
+				@Override
+				public void run() {
+					LocalizationStore store = getStore();
+					if(store==null || (deleted?store.remove(iDocument):store.put(iDocument))) invalidateCache();
+				}
+			});
+		}
+		
 		@Override
 		public void onRecordAfterCreate(ODocument iDocument) {
-			invalidateCache();
+			applyOnCommit(iDocument, false);
 		}
 
 		@Override
 		public void onRecordAfterUpdate(ODocument iDocument) {
-			invalidateCache();
+			applyOnCommit(iDocument, false);
 		}
 
 		@Override
 		public void onRecordAfterDelete(ODocument iDocument) {
-			invalidateCache();
+			applyOnCommit(iDocument, true);
 		}
 
 		@Override
@@ -87,6 +108,12 @@ public class OrienteerLocalizationModule extends AbstractOrienteerModule
 	
 	private static class OrienteerStringResourceLoader implements IStringResourceLoader
 	{
+		private final LocalizationStore store;
+		
+		public OrienteerStringResourceLoader(LocalizationStore store)
+		{
+			this.store = store;
+		}
 
 		@Override
 		public String loadStringResource(Class<?> clazz, String key,
@@ -102,62 +129,14 @@ public class OrienteerLocalizationModule extends AbstractOrienteerModule
 		
 		public String loadStringResource(final String key, Locale locale, final String style, final String variation)
 		{
-			if(Strings.isEmpty(key)) {
-				System.out.println("Empty!");
-			}
-
 			final String language = locale!=null?locale.getLanguage():null;
-			return new DBClosure<String>() {
-
-				@Override
-				protected String execute(ODatabaseDocument db) {
-					OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<ODocument>("select from "+OCLASS_LOCALIZATION+" where "+OPROPERTY_KEY+" = ?");
-					List<ODocument> result = db.command(query).execute(key);
-					if(result==null || result.isEmpty())
-					{
-						registerStringResourceRequest(key, language, style, variation);
-						return null;
-					}
-					
-					ODocument bestCandidate = null;
-					int bestCandidateScore = -1;
-					boolean fullMatchPresent=false;
-					for (ODocument candidate : result)
-					{
-						int score = 0;
-						if(Strings.isEqual(language, (String)candidate.field(OPROPERTY_LANG)))score|=1<<2;
-						if(Strings.isEqual(style, (String)candidate.field(OPROPERTY_STYLE)))score|=1<<1;
-						if(Strings.isEqual(variation, (String)candidate.field(OPROPERTY_VARIATION)))score|=1;
-						if(score==7) fullMatchPresent=true;
-						Boolean active = candidate.field(OPROPERTY_ACTIVE);
-						if(active==null || !active) score=-1;
-						if(score>bestCandidateScore)
-						{
-							bestCandidate = candidate;
-							bestCandidateScore=score;
-						}
-					}
-					if(!fullMatchPresent)
-					{
-						registerStringResourceRequest(key, language, style, variation);
-					}
-					return bestCandidate!=null?(String)bestCandidate.field(OPROPERTY_VALUE):null;
-				}
-			}.execute();
-		}
-		
-		private void registerStringResourceRequest(String key, String language, String style, String variation)
-		{
-			ODocument doc = new ODocument(OCLASS_LOCALIZATION);
-			doc.field(OPROPERTY_KEY, key);
-			doc.field(OPROPERTY_LANG, language);
-			doc.field(OPROPERTY_STYLE, style);
-			doc.field(OPROPERTY_VARIATION, variation);
-			doc.field(OPROPERTY_ACTIVE, false);
-			doc.save();
+			return store.getString(key, language, style, variation);
 		}
 		
 	}
+	
+	@Inject
+	private LocalizationStore store;
 
 	public OrienteerLocalizationModule()
 	{
@@ -189,10 +168,16 @@ public class OrienteerLocalizationModule extends AbstractOrienteerModule
 
 	@Override
 	public void onInitialize(OrienteerWebApplication app, ODatabaseDocument db) {
-		app.getResourceSettings().getStringResourceLoaders().add(new OrienteerStringResourceLoader());
+		store.load(db);
+		app.getResourceSettings().getStringResourceLoaders().add(new OrienteerStringResourceLoader(store));
 		app.getOrientDbSettings().getORecordHooks().add(LocalizationInvalidationHook.class);
 	}
 	
+	@Override
+	public void onDestroy(OrienteerWebApplication app, ODatabaseDocument db) {
+		store.shutdown();
+	}
+	
 	
 	
 	
@@ -0,0 +1,283 @@
+package org.orienteer.core.module;
+
+import static org.orienteer.core.module.PerspectivesModule.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.util.lang.Objects;
+import org.orienteer.core.OrienteerWebApplication;
+import org.orienteer.core.hook.CommitActions;
+import org.orienteer.core.service.IOClassIntrospector;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.hook.ORecordHook;
+import com.orientechnologies.orient.core.hook.ORecordHook.DISTRIBUTED_EXECUTION_MODE;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.security.ORole;
+import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Cache of pre-resolved menu trees of perspectives.
+ * Trees are built once per database, language and set of user roles
+ * and invalidated by {@link PerspectivesInvalidationHook}.
+ */
+@Singleton
+public class PerspectivesMenuCache
+{
+	private static final int CACHE_SIZE = 1000;
+
+	/**
+	 * {@link ORecordHook} to invalidate cached menus and resolved default perspectives of users
+	 * after commit of changes of perspectives, perspective items, roles or users:
+	 * rules of roles define which perspectives and items are visible, users and roles define default perspectives
+	 */
+	public static class PerspectivesInvalidationHook extends ODocumentHookAbstract {
+
+		public PerspectivesInvalidationHook(ODatabaseDocument database) {
+			super(database);
+			setIncludeClasses(OCLASS_PERSPECTIVE, OCLASS_ITEM, ORole.CLASS_NAME, OUser.CLASS_NAME);
+		}
+
+		private void invalidateOnCommit(ODocument iDocument)
+		{
+			OClass oClass = iDocument.getSchemaClass();
+			//Menus don't depend on users and default perspectives don't depend on items
+			final boolean menus = oClass==null || !oClass.isSubClassOf(OUser.CLASS_NAME);
+			final boolean perspectives = oClass==null || !oClass.isSubClassOf(OCLASS_ITEM);
+			CommitActions.runOnCommit(iDocument.getDatabase(), new Runnable() {
+
+				@Override
+				public void run() {
+					OrienteerWebApplication app = OrienteerWebApplication.lookupApplication();
+					if(app==null) return;
+					if(menus) app.getServiceInstance(PerspectivesMenuCache.class).invalidateCache();
+					if(perspectives) app.getServiceInstance(PerspectivesModule.class).invalidateCache();
+				}
+			});
+		}
+
+		@Override
+		public void onRecordAfterCreate(ODocument iDocument) {
+			invalidateOnCommit(iDocument);
+		}
+
+		@Override
+		public void onRecordAfterUpdate(ODocument iDocument) {
+			invalidateOnCommit(iDocument);
+		}
+
+		@Override
+		public void onRecordAfterDelete(ODocument iDocument) {
+			invalidateOnCommit(iDocument);
+		}
+
+		@Override
+		public DISTRIBUTED_EXECUTION_MODE getDistributedExecutionMode() {
+			return DISTRIBUTED_EXECUTION_MODE.BOTH;
+		}
+	}
+
+	/**
+	 * Immutable resolved item of a menu: perspective or perspective item
+	 */
+	public static class MenuItem implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+		private final ORID identity;
+		private final String name;
+		private final String icon;
+		private final String url;
+		private final List<MenuItem> items;
+
+		private MenuItem(ORID identity, String name, String icon, String url, List<MenuItem> items)
+		{
+			this.identity = identity;
+			this.name = name;
+			this.icon = icon;
+			this.url = url;
+			this.items = items;
+		}
+
+		public ORID getIdentity() {
+			return identity;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getIcon() {
+			return icon;
+		}
+
+		/**
+		 * @return url of a perspective item or home url of a perspective
+		 */
+		public String getUrl() {
+			return url;
+		}
+
+		/**
+		 * @return sub items of a perspective item or menu of a perspective
+		 */
+		public List<MenuItem> getItems() {
+			return items;
+		}
+
+		public boolean hasItems() {
+			return !items.isEmpty();
+		}
+	}
+
+	/**
+	 * Key of a cached menu: database, language and names of user roles
+	 */
+	private static class MenuKey
+	{
+		private final String dbURL;
+		private final String language;
+		private final Set<String> roles;
+
+		private MenuKey(String dbURL, String language, Set<String> roles)
+		{
+			this.dbURL = dbURL;
+			this.language = language;
+			this.roles = roles;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(dbURL, language, roles);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this==obj) return true;
+			if(!(obj instanceof MenuKey)) return false;
+			MenuKey other = (MenuKey) obj;
+			return Objects.equal(dbURL, other.dbURL)
+					&& Objects.equal(language, other.language)
+					&& Objects.equal(roles, other.roles);
+		}
+	}
+
+	private final Cache<MenuKey, List<MenuItem>> cache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * @param db {@link ODatabaseDocument} to resolve perspectives from
+	 * @param locale {@link Locale} which was used for names resolution
+	 * @return resolved menus of all perspectives available for current user
+	 */
+	public List<MenuItem> getPerspectives(ODatabaseDocument db, Locale locale)
+	{
+		if(db.getTransaction().isActive()) return buildPerspectives(db);
+		MenuKey key = new MenuKey(db.getURL(), locale!=null?locale.getLanguage():null, getRoles(db.getUser()));
+		List<MenuItem> perspectives = cache.getIfPresent(key);
+		if(perspectives==null)
+		{
+			int currentGeneration = generation.get();
+			perspectives = buildPerspectives(db);
+			//Don't cache menus which might be affected by concurrent invalidation
+			synchronized (generation)
+			{
+				if(currentGeneration==generation.get()) cache.put(key, perspectives);
+			}
+		}
+		return perspectives;
+	}
+
+	/**
+	 * @param db {@link ODatabaseDocument} to resolve perspectives from
+	 * @param locale {@link Locale} which was used for names resolution
+	 * @param perspective perspective to find resolved menu for
+	 * @return resolved menu of specified perspective or null
+	 */
+	public MenuItem getPerspective(ODatabaseDocument db, Locale locale, OIdentifiable perspective)
+	{
+		if(perspective==null) return null;
+		ORID rid = perspective.getIdentity();
+		for(MenuItem item : getPerspectives(db, locale))
+		{
+			if(item.getIdentity().equals(rid)) return item;
+		}
+		return null;
+	}
+
+	/**
+	 * Invalidate all cached menus
+	 */
+	public void invalidateCache()
+	{
+		synchronized (generation)
+		{
+			generation.incrementAndGet();
+			cache.invalidateAll();
+		}
+	}
+
+	private static Set<String> getRoles(OUser user)
+	{
+		Set<String> roles = new TreeSet<String>();
+		if(user!=null)
+		{
+			for(ORole role : user.getRoles())
+			{
+				if(role!=null) roles.add(role.getName());
+			}
+		}
+		return roles;
+	}
+
+	private List<MenuItem> buildPerspectives(ODatabaseDocument db)
+	{
+		List<MenuItem> perspectives = new ArrayList<MenuItem>();
+		if(db.getMetadata().getSchema().existsClass(OCLASS_PERSPECTIVE))
+		{
+			IOClassIntrospector introspector = OrienteerWebApplication.get().getOClassIntrospector();
+			for(ODocument perspective : db.browseClass(OCLASS_PERSPECTIVE))
+			{
+				perspectives.add(buildItem(introspector, perspective, "homeUrl", "menu", new TreeSet<ORID>()));
+			}
+		}
+		return Collections.unmodifiableList(perspectives);
+	}
+
+	private MenuItem buildItem(IOClassIntrospector introspector, ODocument doc, String urlField, String itemsField, Set<ORID> path)
+	{
+		ORID rid = doc.getIdentity().copy();
+		path.add(rid);
+		List<MenuItem> items = new ArrayList<MenuItem>();
+		List<OIdentifiable> subItems = doc.field(itemsField);
+		if(subItems!=null)
+		{
+			for(OIdentifiable subItem : subItems)
+			{
+				ODocument subItemDoc = subItem!=null?(ODocument)subItem.getRecord():null;
+				//Skip broken links and cycles
+				if(subItemDoc==null || path.contains(subItemDoc.getIdentity())) continue;
+				items.add(buildItem(introspector, subItemDoc, "url", "subItems", path));
+			}
+		}
+		path.remove(rid);
+		return new MenuItem(rid,
+							introspector.getDocumentName(doc),
+							(String)doc.field("icon"),
+							(String)doc.field(urlField),
+							items.isEmpty()?Collections.<MenuItem>emptyList():Collections.unmodifiableList(items));
+	}
+}
@@ -2,6 +2,7 @@ package org.orienteer.core.module;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OClass.INDEX_TYPE;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
@@ -21,10 +22,14 @@ import org.orienteer.core.util.OSchemaHelper;
 
 import ru.ydn.wicket.wicketorientdb.utils.DBClosure;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import javax.inject.Singleton;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link IOrienteerModule} for "perspectives" feature of Orienteer
@@ -35,12 +40,19 @@ public class PerspectivesModule extends AbstractOrienteerModule
 	public static final String OCLASS_PERSPECTIVE="OPerspective";
 	public static final String OCLASS_ITEM = "OPerspectiveItem";
 
+	public static final String OPROPERTY_ALIAS = "alias";
+
 	public static final String DEFAULT_PERSPECTIVE = "Default";
+	public static final String DEFAULT_PERSPECTIVE_ALIAS = "default";
 	
+	private static final int CACHE_SIZE = 10000;
+	
+	private final Cache<String, ORID> resolvedPerspectives = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+	private final AtomicInteger generation = new AtomicInteger();
 
 	public PerspectivesModule()
 	{
-		super("perspectives", 3);
+		super("perspectives", 4);
 	}
 
 	@Override
@@ -50,12 +62,14 @@ public class PerspectivesModule extends AbstractOrienteerModule
 				.oProperty("name", OType.EMBEDDEDMAP).assignVisualization("localization")
 					.markAsDocumentName()
 					.oIndex(OCLASS_PERSPECTIVE + ".name", INDEX_TYPE.UNIQUE)
+				.oProperty(OPROPERTY_ALIAS, OType.STRING)
+					.oIndex(OCLASS_PERSPECTIVE + "." + OPROPERTY_ALIAS, INDEX_TYPE.UNIQUE)
 				.oProperty("icon", OType.STRING)
 				.oProperty("homeUrl", OType.STRING)
 				.oProperty("menu", OType.LINKLIST).assignVisualization("table")
 				.oProperty("footer", OType.STRING).assignVisualization("textarea")
 				.switchDisplayable(true, "name", "homeUrl")
-				.orderProperties("name", "icon", "homeUrl", "footer", "menu")
+				.orderProperties("name", OPROPERTY_ALIAS, "icon", "homeUrl", "footer", "menu")
 			.oClass(OCLASS_ITEM)
 				.oProperty("name", OType.EMBEDDEDMAP).assignVisualization("localization").markAsDocumentName()
 				.oProperty("icon", OType.STRING)
@@ -84,6 +98,10 @@ public class PerspectivesModule extends AbstractOrienteerModule
 			case 3:
 				onInstall(app, db);
 				break;
+			case 4:
+				onInstall(app, db);
+				assignDefaultAlias(db);
+				break;
 			default:
 				break;
 		}
@@ -115,6 +133,15 @@ public class PerspectivesModule extends AbstractOrienteerModule
 		if(wasInTransacton) db.begin();
 	}
 	
+	private void assignDefaultAlias(ODatabaseDocument db) {
+		if(getPerspectiveByAlias(db, DEFAULT_PERSPECTIVE_ALIAS)!=null) return;
+		ODocument perspective = getPerspectiveByName(db, DEFAULT_PERSPECTIVE);
+		if(perspective!=null) {
+			perspective.field(OPROPERTY_ALIAS, DEFAULT_PERSPECTIVE_ALIAS);
+			perspective.save();
+		}
+	}
+	
 	private ODocument runtimeRepairDefaultPerspective()
 	{
 		return new DBClosure<ODocument>() {
@@ -123,6 +150,7 @@ public class PerspectivesModule extends AbstractOrienteerModule
 			protected ODocument execute(ODatabaseDocument db) {
 				ODocument perspective = new ODocument(OCLASS_PERSPECTIVE);
 				perspective.field("name", CommonUtils.toMap("en", DEFAULT_PERSPECTIVE));
+				perspective.field(OPROPERTY_ALIAS, DEFAULT_PERSPECTIVE_ALIAS);
 				perspective.field("homeUrl", "/classes");
 				perspective.save();
 				
@@ -179,7 +207,60 @@ public class PerspectivesModule extends AbstractOrienteerModule
 		}
 	}
 	
+	/**
+	 * Find perspective by its indexed alias
+	 * @param db {@link ODatabaseDocument} to search in
+	 * @param alias alias of a perspective
+	 * @return perspective or null
+	 */
+	public ODocument getPerspectiveByAlias(ODatabaseDocument db, String alias)
+	{
+		List<ODocument> perspectives = db.query(new OSQLSynchQuery<ODocument>("select from "+OCLASS_PERSPECTIVE+" where "+OPROPERTY_ALIAS+" = ?", 1), alias);
+		return perspectives!=null && !perspectives.isEmpty()?perspectives.get(0):null;
+	}
+	
 	public ODocument getDefaultPerspective(ODatabaseDocument db, OUser user)
+	{
+		ORID userRid = user!=null?user.getDocument().getIdentity():null;
+		String key = db.getTransaction().isActive() || (userRid!=null && !userRid.isPersistent())
+						?null:db.getURL()+"|"+userRid;
+		if(key!=null)
+		{
+			ORID cached = resolvedPerspectives.getIfPresent(key);
+			if(cached!=null)
+			{
+				ODocument perspective = db.load(cached);
+				if(perspective!=null) return perspective;
+				resolvedPerspectives.invalidate(key);
+			}
+		}
+		int currentGeneration = generation.get();
+		ODocument perspective = resolveDefaultPerspective(db, user);
+		if(key!=null && perspective!=null && perspective.getIdentity().isPersistent())
+		{
+			//Don't cache results which might be affected by concurrent invalidation
+			synchronized (generation)
+			{
+				if(currentGeneration==generation.get()) resolvedPerspectives.put(key, perspective.getIdentity().copy());
+			}
+		}
+		return perspective;
+	}
+	
+	/**
+	 * Invalidate cache of resolved default perspectives of users.
+	 * Called by {@link PerspectivesMenuCache.PerspectivesInvalidationHook} after commit of changes of users, roles or perspectives
+	 */
+	public void invalidateCache()
+	{
+		synchronized (generation)
+		{
+			generation.incrementAndGet();
+			resolvedPerspectives.invalidateAll();
+		}
+	}
+	
+	private ODocument resolveDefaultPerspective(ODatabaseDocument db, OUser user)
 	{
 		if(user!=null)
 		{
@@ -194,7 +275,8 @@ public class PerspectivesModule extends AbstractOrienteerModule
 				if(perspective!=null) return perspective;
 			}
 		}
-		ODocument perspective = getPerspectiveByName(db, DEFAULT_PERSPECTIVE);
+		ODocument perspective = getPerspectiveByAlias(db, DEFAULT_PERSPECTIVE_ALIAS);
+		if(perspective==null) perspective = getPerspectiveByName(db, DEFAULT_PERSPECTIVE);
 		if(perspective==null)
 		{
 			perspective = runtimeRepairDefaultPerspective();
@@ -230,6 +312,7 @@ public class PerspectivesModule extends AbstractOrienteerModule
 			//Repair
 			onInstall(app, db);
 		}
+		app.getOrientDbSettings().getORecordHooks().add(PerspectivesMenuCache.PerspectivesInvalidationHook.class);
 	}
 
 }
@@ -0,0 +1,282 @@
+package org.orienteer.core.resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.string.Strings;
+import org.orienteer.core.OrienteerWebApplication;
+
+import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
+
+import com.orientechnologies.orient.core.exception.OSecurityException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Shared {@link AbstractResource} to download values of BINARY properties.
+ * Resource is identified by RID, property name and version of a document: see {@link #toPageParameters(ODocument, String)}.
+ * Supports ETag/If-None-Match validation and single byte ranges, so downloads can be resumed.
+ * Requests for multiple ranges are served with the whole content.
+ */
+public class ODocumentBinaryResource extends AbstractResource
+{
+	private static final long serialVersionUID = 1L;
+
+	public static final String MOUNT_PATH = "/binary";
+	public static final String PARAM_RID = "rid";
+	public static final String PARAM_PROPERTY = "property";
+	public static final String PARAM_VERSION = "v";
+
+	private static final int CHUNK_SIZE = 64*1024;
+
+	public static final ODocumentBinaryResource INSTANCE = new ODocumentBinaryResource();
+
+	public static final ResourceReference REFERENCE = new ResourceReference(ODocumentBinaryResource.class, "binary") {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public IResource getResource() {
+			return INSTANCE;
+		}
+	};
+
+	/**
+	 * @param doc {@link ODocument} to get binary value from
+	 * @param property name of a property with binary value
+	 * @return {@link PageParameters} for {@link #REFERENCE}
+	 */
+	public static PageParameters toPageParameters(ODocument doc, String property)
+	{
+		PageParameters params = new PageParameters();
+		params.add(PARAM_RID, ridToString(doc.getIdentity()));
+		params.add(PARAM_PROPERTY, property);
+		params.add(PARAM_VERSION, doc.getVersion());
+		return params;
+	}
+
+	protected static String ridToString(ORID rid)
+	{
+		return rid.getClusterId()+":"+rid.getClusterPosition();
+	}
+
+	@Override
+	protected ResourceResponse newResourceResponse(Attributes attributes) {
+		ResourceResponse response = new ResourceResponse();
+		PageParameters params = attributes.getParameters();
+		String property = params.get(PARAM_PROPERTY).toOptionalString();
+		ODocument doc;
+		try
+		{
+			doc = loadDocument(params.get(PARAM_RID).toOptionalString());
+		} catch (OSecurityException e)
+		{
+			response.setError(HttpServletResponse.SC_FORBIDDEN);
+			return response;
+		}
+		final byte[] data = doc!=null && !Strings.isEmpty(property)?getData(doc, property, params):null;
+		if(data==null)
+		{
+			response.setError(HttpServletResponse.SC_NOT_FOUND);
+			return response;
+		}
+		String eTag = "\""+getETag(doc, property, params)+"\"";
+		response.getHeaders().addHeader("ETag", eTag);
+		response.getHeaders().addHeader("Accept-Ranges", "bytes");
+		String contentType = getContentType(doc, property, data, params);
+		response.setContentType(contentType);
+		response.setFileName(getFileName(doc, property, contentType));
+		Integer version = params.get(PARAM_VERSION).toOptionalInteger();
+		if(version!=null && version==doc.getVersion())
+		{
+			//URL contains version, so content for it never changes
+			response.setCacheDurationToMaximum();
+			response.setCacheScope(WebResponse.CacheScope.PRIVATE);
+		}
+		else
+		{
+			response.disableCaching();
+		}
+
+		WebRequest request = (WebRequest) attributes.getRequest();
+		if(matchesETag(request.getHeader("If-None-Match"), eTag))
+		{
+			response.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+			return response;
+		}
+
+		String ifRange = request.getHeader("If-Range");
+		long[] range = ifRange==null || eTag.equals(ifRange)
+							?parseRange(request.getHeader("Range"), data.length)
+							:null;
+		final int from;
+		final int to;
+		if(range==null)
+		{
+			from = 0;
+			to = data.length;
+		}
+		else if(range.length==0)
+		{
+			response.getHeaders().addHeader("Content-Range", "bytes */"+data.length);
+			response.setError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return response;
+		}
+		else
+		{
+			from = (int)range[0];
+			to = (int)range[1]+1;
+			response.setStatusCode(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.getHeaders().addHeader("Content-Range", "bytes "+range[0]+"-"+range[1]+"/"+data.length);
+		}
+		response.setContentLength(to-from);
+		response.setWriteCallback(new WriteCallback() {
+
+			@Override
+			public void writeData(Attributes attributes) throws IOException {
+				OutputStream out = attributes.getResponse().getOutputStream();
+				for(int offset=from; offset<to; offset+=CHUNK_SIZE)
+				{
+					out.write(data, offset, Math.min(CHUNK_SIZE, to-offset));
+				}
+			}
+		});
+		return response;
+	}
+
+	protected ODocument loadDocument(String rid)
+	{
+		if(Strings.isEmpty(rid)) return null;
+		ORecordId recordId;
+		try
+		{
+			recordId = new ORecordId(rid);
+		} catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+		if(!recordId.isValid()) return null;
+		return OrientDbWebSession.get().getDatabase().load(recordId);
+	}
+
+	protected byte[] getData(ODocument doc, String property, PageParameters params)
+	{
+		Object value = doc.field(property);
+		return value instanceof byte[]?(byte[])value:null;
+	}
+
+	protected String getETag(ODocument doc, String property, PageParameters params)
+	{
+		return ridToString(doc.getIdentity())+"-"+doc.getVersion()+"-"+property;
+	}
+
+	protected String getContentType(ODocument doc, String property, byte[] data, PageParameters params)
+	{
+		return "application/octet-stream";
+	}
+
+	/**
+	 * @param doc {@link ODocument} with binary value
+	 * @param property name of a property with binary value
+	 * @param contentType content type returned by {@link #getContentType(ODocument, String, byte[], PageParameters)}
+	 * @return name of a file to download
+	 */
+	protected String getFileName(ODocument doc, String property, String contentType)
+	{
+		return getFileNameBase(doc, property)+".bin";
+	}
+
+	/**
+	 * @param doc {@link ODocument} with binary value
+	 * @param property name of a property with binary value
+	 * @return name of a file without extension
+	 */
+	protected String getFileNameBase(ODocument doc, String property)
+	{
+		return OrienteerWebApplication.get().getOClassIntrospector().getDocumentName(doc)+"."+property;
+	}
+
+	/**
+	 * Check 'If-None-Match' header against an entity tag. Weak comparison is used as required for 'If-None-Match':
+	 * list of entity tags separated by commas, weak entity tags (W/"...") and '*' are supported
+	 * @param header value of 'If-None-Match' header
+	 * @param eTag quoted entity tag of a content
+	 * @return true if the header matches the entity tag
+	 */
+	static boolean matchesETag(String header, String eTag)
+	{
+		if(header==null || eTag==null) return false;
+		int length = header.length();
+		int i = 0;
+		while(i<length)
+		{
+			char c = header.charAt(i);
+			if(c==',' || Character.isWhitespace(c))
+			{
+				i++;
+				continue;
+			}
+			if(c=='*') return true;
+			if(header.startsWith("W/", i)) i+=2;
+			//Malformed header: nothing can be matched
+			if(i>=length || header.charAt(i)!='"') return false;
+			int end = header.indexOf('"', i+1);
+			if(end<0) return false;
+			if(end+1-i==eTag.length() && header.regionMatches(i, eTag, 0, eTag.length())) return true;
+			i = end+1;
+		}
+		return false;
+	}
+
+	/**
+	 * Parse single byte range of 'Range' header
+	 * @param header value of 'Range' header
+	 * @param length length of a content
+	 * @return null if range is not specified or not supported, empty array if range can't be satisfied,
+	 * 		   otherwise first and last (inclusive) positions
+	 */
+	static long[] parseRange(String header, long length)
+	{
+		if(header==null || !header.startsWith("bytes=")) return null;
+		String spec = header.substring("bytes=".length()).trim();
+		//Multiple ranges are not supported: whole content will be sent
+		if(spec.indexOf(',')>=0) return null;
+		int dash = spec.indexOf('-');
+		if(dash<0) return null;
+		try
+		{
+			String fromStr = spec.substring(0, dash).trim();
+			String toStr = spec.substring(dash+1).trim();
+			long from;
+			long to;
+			if(fromStr.isEmpty())
+			{
+				if(toStr.isEmpty()) return null;
+				long suffix = Long.parseLong(toStr);
+				if(suffix<=0) return new long[0];
+				from = Math.max(0, length-suffix);
+				to = length-1;
+			}
+			else
+			{
+				from = Long.parseLong(fromStr);
+				to = toStr.isEmpty()?length-1:Math.min(Long.parseLong(toStr), length-1);
+				if(from>=length) return new long[0];
+				if(from>to) return null;
+			}
+			return length>0?new long[]{from, to}:new long[0];
+		} catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+package org.orienteer.core.resource;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.tika.Tika;
+import org.apache.tika.mime.MimeTypeException;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.string.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * {@link ODocumentBinaryResource} to show images stored in BINARY properties.
+ * MIME type is detected once per version of a record. If parameter {@link #PARAM_SIZE} is specified,
+ * image is scaled down to fit into a square of that size: such thumbnails are kept in a cache with bounded total size.
+ * Extension of a file name corresponds to the detected MIME type.
+ */
+public class ODocumentImageResource extends ODocumentBinaryResource
+{
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(ODocumentImageResource.class);
+
+	public static final String MOUNT_PATH = "/image";
+	public static final String PARAM_SIZE = "size";
+	/**
+	 * Size of thumbnails for tables and lists
+	 */
+	public static final int THUMBNAIL_SIZE = 128;
+	public static final int MAX_THUMBNAIL_SIZE = 1024;
+
+	private static final long MAX_THUMBNAILS_WEIGHT = 32*1024*1024;
+	private static final byte[] NOT_RESIZABLE = new byte[0];
+
+	private static final Tika TIKA = new Tika();
+
+	private static final Cache<String, String> MIME_TYPES = CacheBuilder.newBuilder()
+																.maximumSize(10000)
+																.expireAfterAccess(1, TimeUnit.HOURS)
+																.build();
+
+	private static final Cache<String, byte[]> THUMBNAILS = CacheBuilder.newBuilder()
+																.maximumWeight(MAX_THUMBNAILS_WEIGHT)
+																.weigher(new Weigher<String, byte[]>() {
+
+																	@Override
+																	public int weigh(String key, byte[] value) {
+																		return key.length()+value.length;
+																	}
+																})
+																.expireAfterAccess(1, TimeUnit.HOURS)
+																.build();
+
+	public static final ODocumentImageResource INSTANCE = new ODocumentImageResource();
+
+	public static final ResourceReference REFERENCE = new ResourceReference(ODocumentImageResource.class, "image") {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public IResource getResource() {
+			return INSTANCE;
+		}
+	};
+
+	/**
+	 * @param doc {@link ODocument} to get image from
+	 * @param property name of a property with image
+	 * @param size size of a thumbnail. Original image is used if it's not positive
+	 * @return {@link PageParameters} for {@link #REFERENCE}
+	 */
+	public static PageParameters toPageParameters(ODocument doc, String property, int size)
+	{
+		PageParameters params = toPageParameters(doc, property);
+		if(size>0) params.add(PARAM_SIZE, size);
+		return params;
+	}
+
+	@Override
+	protected byte[] getData(ODocument doc, String property, PageParameters params) {
+		byte[] data = super.getData(doc, property, params);
+		int size = getThumbnailSize(params);
+		if(data==null || size<=0) return data;
+		String key = getCacheKey(doc, property, size);
+		byte[] thumbnail = THUMBNAILS.getIfPresent(key);
+		if(thumbnail==null)
+		{
+			thumbnail = createThumbnail(data, size);
+			THUMBNAILS.put(key, thumbnail!=null?thumbnail:NOT_RESIZABLE);
+		}
+		return thumbnail!=null && thumbnail!=NOT_RESIZABLE?thumbnail:data;
+	}
+
+	@Override
+	protected String getETag(ODocument doc, String property, PageParameters params) {
+		return super.getETag(doc, property, params)+"-"+getThumbnailSize(params);
+	}
+
+	@Override
+	protected String getContentType(ODocument doc, String property, byte[] data, PageParameters params) {
+		String key = getCacheKey(doc, property, getThumbnailSize(params));
+		String mimeType = MIME_TYPES.getIfPresent(key);
+		if(mimeType==null)
+		{
+			mimeType = TIKA.detect(data);
+			MIME_TYPES.put(key, mimeType);
+		}
+		return mimeType;
+	}
+
+	@Override
+	protected String getFileName(ODocument doc, String property, String contentType) {
+		String extension = getExtension(contentType);
+		return extension!=null?getFileNameBase(doc, property)+extension:super.getFileName(doc, property, contentType);
+	}
+
+	/**
+	 * @param mimeType MIME type to find extension for
+	 * @return preferred extension (with leading dot) for a MIME type or null if it's unknown
+	 */
+	static String getExtension(String mimeType)
+	{
+		if(Strings.isEmpty(mimeType)) return null;
+		try
+		{
+			String extension = MimeTypes.getDefaultMimeTypes().forName(mimeType).getExtension();
+			return Strings.isEmpty(extension)?null:extension;
+		} catch (MimeTypeException e)
+		{
+			return null;
+		}
+	}
+
+	protected int getThumbnailSize(PageParameters params)
+	{
+		int size = params.get(PARAM_SIZE).toInt(0);
+		return Math.min(Math.max(size, 0), MAX_THUMBNAIL_SIZE);
+	}
+
+	private String getCacheKey(ODocument doc, String property, int size)
+	{
+		return doc.getDatabase().getURL()+"|"+super.getETag(doc, property, null)+"|"+size;
+	}
+
+	/**
+	 * Scale image down to fit into a square
+	 * @param data image to scale
+	 * @param size size of a square
+	 * @return scaled image or null if image can't be read or it's smaller than required
+	 */
+	protected byte[] createThumbnail(byte[] data, int size)
+	{
+		try
+		{
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+			if(image==null || (image.getWidth()<=size && image.getHeight()<=size)) return null;
+			double scale = Math.min((double)size/image.getWidth(), (double)size/image.getHeight());
+			int width = Math.max(1, (int)Math.round(image.getWidth()*scale));
+			int height = Math.max(1, (int)Math.round(image.getHeight()*scale));
+			boolean alpha = image.getColorModel().hasAlpha();
+			BufferedImage thumbnail = new BufferedImage(width, height, alpha?BufferedImage.TYPE_INT_ARGB:BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = thumbnail.createGraphics();
+			try
+			{
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				g.drawImage(image, 0, 0, width, height, null);
+			} finally
+			{
+				g.dispose();
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write(thumbnail, alpha?"png":"jpg", out);
+			return out.toByteArray();
+		} catch (IOException e)
+		{
+			LOG.warn("Can't create thumbnail", e);
+			return null;
+		}
+	}
+}
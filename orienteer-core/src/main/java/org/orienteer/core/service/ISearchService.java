@@ -0,0 +1,53 @@
+package org.orienteer.core.service;
+
+import java.util.List;
+
+import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.service.impl.FullTextSearchService;
+
+import com.google.inject.ImplementedBy;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+
+/**
+ * Guice service for full-text search over properties marked as {@link CustomAttributes#SEARCHABLE}
+ */
+@ImplementedBy(FullTextSearchService.class)
+public interface ISearchService
+{
+	/**
+	 * Create or drop search index for a property according to {@link CustomAttributes#SEARCHABLE}
+	 * @param db {@link ODatabaseDocument} to work in. Should not be in transaction
+	 * @param property {@link OProperty} to update index for
+	 */
+	public void updateSearchIndex(ODatabaseDocument db, OProperty property);
+
+	/**
+	 * @param db {@link ODatabaseDocument} to look properties in
+	 * @return properties which are marked as searchable and have search index
+	 */
+	public List<OProperty> listSearchableProperties(ODatabaseDocument db);
+
+	/**
+	 * @param db {@link ODatabaseDocument} to look properties in
+	 * @return true if there is at least one indexed searchable property
+	 */
+	public boolean isSearchEnabled(ODatabaseDocument db);
+
+	/**
+	 * @param db {@link ODatabaseDocument} to look properties in
+	 * @param oClass {@link OClass} to check
+	 * @return true if the class or one of its superclasses has an indexed searchable property,
+	 * so documents of the class are found by {@link #search(ODatabaseDocument, String)}
+	 */
+	public boolean isSearchEnabled(ODatabaseDocument db, OClass oClass);
+
+	/**
+	 * Search documents which contains all words from a query within searchable properties
+	 * @param db {@link ODatabaseDocument} to search in
+	 * @param query text to search
+	 * @return {@link SearchResults} grouped by classes and ranked by relevance
+	 */
+	public SearchResults search(ODatabaseDocument db, String query);
+}
@@ -0,0 +1,78 @@
+package org.orienteer.core.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.id.ORID;
+
+/**
+ * Immutable results of a search made by {@link ISearchService}: hits grouped by classes
+ */
+public class SearchResults implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	public static final SearchResults EMPTY = new SearchResults(Collections.<String, List<ORID>>emptyMap(), false);
+
+	private final Map<String, List<ORID>> hits;
+	private final boolean truncated;
+
+	/**
+	 * @param hits ranked hits per class. Order of classes is preserved
+	 * @param truncated true if some hits were skipped because of limits
+	 */
+	public SearchResults(Map<String, List<ORID>> hits, boolean truncated)
+	{
+		Map<String, List<ORID>> copy = new LinkedHashMap<String, List<ORID>>();
+		for(Map.Entry<String, List<ORID>> entry : hits.entrySet())
+		{
+			copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<ORID>(entry.getValue())));
+		}
+		this.hits = Collections.unmodifiableMap(copy);
+		this.truncated = truncated;
+	}
+
+	/**
+	 * @return names of classes with hits ordered by relevance
+	 */
+	public List<String> getClassNames()
+	{
+		return new ArrayList<String>(hits.keySet());
+	}
+
+	/**
+	 * @param className name of a class
+	 * @return hits within the class ordered by relevance
+	 */
+	public List<ORID> getHits(String className)
+	{
+		List<ORID> ret = className!=null?hits.get(className):null;
+		return ret!=null?ret:Collections.<ORID>emptyList();
+	}
+
+	public int getHitsCount(String className)
+	{
+		return getHits(className).size();
+	}
+
+	public int getTotalHitsCount()
+	{
+		int ret = 0;
+		for(List<ORID> classHits : hits.values()) ret+=classHits.size();
+		return ret;
+	}
+
+	public boolean isEmpty()
+	{
+		return hits.isEmpty();
+	}
+
+	public boolean isTruncated()
+	{
+		return truncated;
+	}
+}
@@ -0,0 +1,338 @@
+package org.orienteer.core.service.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.OrienteerWebApplication;
+import org.orienteer.core.hook.CommitActions;
+import org.orienteer.core.service.ISearchService;
+import org.orienteer.core.service.SearchResults;
+
+import ru.ydn.wicket.wicketorientdb.proto.IPrototype;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.hook.ORecordHook;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OClass.INDEX_TYPE;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Implementation of {@link ISearchService} which uses OrientDB FULLTEXT indexes.
+ * Indexes are maintained by OrientDB itself on every change of a document,
+ * so search never scans classes: every word of a query is looked up in indexes of all searchable properties.
+ * Documents are ranked by number of matches of words in different properties.
+ * Results are cached for a short time and invalidated by {@link SearchInvalidationHook} on commit of changes of searchable classes.
+ */
+@Singleton
+public class FullTextSearchService implements ISearchService
+{
+	public static final String INDEX_SUFFIX = ".search";
+	/**
+	 * Words shorter than that are not stored in FULLTEXT indexes by default
+	 */
+	public static final int MIN_WORD_LENGTH = 3;
+	/**
+	 * Maximum number of documents to be taken into account for a single word in a single property
+	 */
+	public static final int MAX_HITS_PER_WORD = 10000;
+
+	private static final int CACHE_SIZE = 100;
+	private static final String WORD_SEPARATORS = "[\\s:;,.|+*/\\\\=!?\\[\\]()'\"]+";
+
+	private final Cache<String, SearchResults> cache = CacheBuilder.newBuilder()
+															.maximumSize(CACHE_SIZE)
+															.expireAfterWrite(1, TimeUnit.MINUTES)
+															.build();
+
+	/**
+	 * {@link ORecordHook} to invalidate cached search results after commit of changes of documents
+	 * which are covered by searchable properties
+	 */
+	public static class SearchInvalidationHook extends ODocumentHookAbstract {
+
+		public SearchInvalidationHook(ODatabaseDocument database) {
+			super(database);
+		}
+
+		private void invalidateOnCommit(ODocument iDocument)
+		{
+			ODatabaseDocument db = iDocument.getDatabase();
+			OClass oClass = iDocument.getSchemaClass();
+			if(db==null || oClass==null || !isCovered(OSchemaMetadata.get(db).getSearchableProperties(), oClass)) return;
+			CommitActions.runOnCommit(db, new Runnable() {
+
+				@Override
+				public void run() {
+					OrienteerWebApplication app = OrienteerWebApplication.lookupApplication();
+					if(app!=null) app.getServiceInstance(FullTextSearchService.class).invalidateCache();
+				}
+			});
+		}
+
+		@Override
+		public void onRecordAfterCreate(ODocument iDocument) {
+			invalidateOnCommit(iDocument);
+		}
+
+		@Override
+		public void onRecordAfterUpdate(ODocument iDocument) {
+			invalidateOnCommit(iDocument);
+		}
+
+		@Override
+		public void onRecordAfterDelete(ODocument iDocument) {
+			invalidateOnCommit(iDocument);
+		}
+
+		@Override
+		public DISTRIBUTED_EXECUTION_MODE getDistributedExecutionMode() {
+			return DISTRIBUTED_EXECUTION_MODE.BOTH;
+		}
+	}
+
+	/**
+	 * Hit of a single document
+	 */
+	static class Hit
+	{
+		private final ORID rid;
+		private final String className;
+		private final BitSet words = new BitSet();
+		private int score = 0;
+
+		public Hit(ORID rid, String className)
+		{
+			this.rid = rid;
+			this.className = className;
+		}
+
+		/**
+		 * Register match of a word in one more property
+		 * @param word index of a word in a query
+		 * @return this hit
+		 */
+		public Hit match(int word)
+		{
+			words.set(word);
+			score++;
+			return this;
+		}
+	}
+
+	private static final Comparator<Hit> BY_SCORE = new Comparator<Hit>() {
+
+		@Override
+		public int compare(Hit o1, Hit o2) {
+			return Integer.compare(o2.score, o1.score);
+		}
+	};
+
+	public static String getSearchIndexName(OProperty property)
+	{
+		return property.getOwnerClass().getName()+"."+property.getName()+INDEX_SUFFIX;
+	}
+
+	@Override
+	public void updateSearchIndex(ODatabaseDocument db, OProperty property) {
+		if(property==null || property instanceof IPrototype) return;
+		OClass oClass = property.getOwnerClass();
+		String indexName = getSearchIndexName(property);
+		boolean indexed = oClass.getClassIndex(indexName)!=null;
+		boolean searchable = OType.STRING.equals(property.getType())
+								&& (Boolean)CustomAttributes.SEARCHABLE.getValue(property);
+		if(searchable && !indexed)
+		{
+			oClass.createIndex(indexName, INDEX_TYPE.FULLTEXT, property.getName());
+			cache.invalidateAll();
+		}
+		else if(!searchable && indexed)
+		{
+			db.getMetadata().getIndexManager().dropIndex(indexName);
+			cache.invalidateAll();
+		}
+	}
+
+	@Override
+	public List<OProperty> listSearchableProperties(ODatabaseDocument db) {
+		//Properties marked as searchable are taken from the schema snapshot: only presence of indexes is checked
+		List<OProperty> candidates = OSchemaMetadata.get(db).getSearchableProperties();
+		List<OProperty> ret = new ArrayList<OProperty>(candidates.size());
+		for(OProperty property : candidates)
+		{
+			if(isIndexed(property)) ret.add(property);
+		}
+		return ret;
+	}
+
+	@Override
+	public boolean isSearchEnabled(ODatabaseDocument db) {
+		for(OProperty property : OSchemaMetadata.get(db).getSearchableProperties())
+		{
+			if(isIndexed(property)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isSearchEnabled(ODatabaseDocument db, OClass oClass) {
+		return oClass!=null && isCovered(listSearchableProperties(db), oClass);
+	}
+
+	/**
+	 * @param properties properties to check
+	 * @param oClass {@link OClass} to check
+	 * @return true if some of properties belongs to the class or to one of its superclasses
+	 */
+	private static boolean isCovered(List<OProperty> properties, OClass oClass)
+	{
+		for(OProperty property : properties)
+		{
+			if(oClass.isSubClassOf(property.getOwnerClass())) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Drop all cached search results
+	 */
+	public void invalidateCache()
+	{
+		cache.invalidateAll();
+	}
+
+	private static boolean isIndexed(OProperty property)
+	{
+		return property.getOwnerClass().getClassIndex(getSearchIndexName(property))!=null;
+	}
+
+	@Override
+	public SearchResults search(ODatabaseDocument db, String query) {
+		List<String> words = splitIntoWords(query);
+		if(words.isEmpty()) return SearchResults.EMPTY;
+		OUser user = db.getUser();
+		String key = db.getURL()+"|"+(user!=null?user.getName():"")+"|"+words;
+		SearchResults results = db.getTransaction().isActive()?null:cache.getIfPresent(key);
+		if(results==null)
+		{
+			results = doSearch(db, words);
+			if(!db.getTransaction().isActive()) cache.put(key, results);
+		}
+		return results;
+	}
+
+	private SearchResults doSearch(ODatabaseDocument db, List<String> words)
+	{
+		Map<ORID, Hit> hits = new HashMap<ORID, Hit>();
+		boolean truncated = false;
+		for(OProperty property : listSearchableProperties(db))
+		{
+			OSQLSynchQuery<ODocument> sql = new OSQLSynchQuery<ODocument>("select @rid as rid, @class as cls from "
+										+property.getOwnerClass().getName()+" where "+property.getName()+" containstext ?", MAX_HITS_PER_WORD);
+			for(int i=0; i<words.size(); i++)
+			{
+				List<ODocument> found = db.query(sql, words.get(i));
+				if(found==null) continue;
+				if(found.size()>=MAX_HITS_PER_WORD) truncated = true;
+				for(ODocument row : found)
+				{
+					OIdentifiable id = row.field("rid");
+					if(id==null) continue;
+					ORID rid = id.getIdentity();
+					Hit hit = hits.get(rid);
+					if(hit==null)
+					{
+						rid = rid.copy();
+						hit = new Hit(rid, (String)row.field("cls"));
+						hits.put(rid, hit);
+					}
+					hit.match(i);
+				}
+			}
+		}
+		return new SearchResults(rank(hits.values(), words.size()), truncated);
+	}
+
+	/**
+	 * Group hits which contain all words by classes and rank them.
+	 * Classes with more hits go first, documents with more matches go first within a class
+	 * @param hits hits to rank
+	 * @param wordsCount number of words in a query
+	 * @return ranked identities of documents grouped by classes
+	 */
+	static Map<String, List<ORID>> rank(Collection<Hit> hits, int wordsCount)
+	{
+		Map<String, List<Hit>> byClass = new HashMap<String, List<Hit>>();
+		for(Hit hit : hits)
+		{
+			//All words should be found
+			if(hit.words.cardinality()<wordsCount) continue;
+			List<Hit> classHits = byClass.get(hit.className);
+			if(classHits==null)
+			{
+				classHits = new ArrayList<Hit>();
+				byClass.put(hit.className, classHits);
+			}
+			classHits.add(hit);
+		}
+
+		List<Map.Entry<String, List<Hit>>> classes = new ArrayList<Map.Entry<String, List<Hit>>>(byClass.entrySet());
+		Collections.sort(classes, new Comparator<Map.Entry<String, List<Hit>>>() {
+
+			@Override
+			public int compare(Map.Entry<String, List<Hit>> o1, Map.Entry<String, List<Hit>> o2) {
+				int ret = Integer.compare(o2.getValue().size(), o1.getValue().size());
+				return ret!=0?ret:String.valueOf(o1.getKey()).compareTo(String.valueOf(o2.getKey()));
+			}
+		});
+		Map<String, List<ORID>> ranked = new LinkedHashMap<String, List<ORID>>();
+		for(Map.Entry<String, List<Hit>> entry : classes)
+		{
+			List<Hit> classHits = entry.getValue();
+			Collections.sort(classHits, BY_SCORE);
+			List<ORID> rids = new ArrayList<ORID>(classHits.size());
+			for(Hit hit : classHits) rids.add(hit.rid);
+			ranked.put(entry.getKey(), rids);
+		}
+		return ranked;
+	}
+
+	/**
+	 * Split query into distinct words which can be found in FULLTEXT index.
+	 * Case is preserved: FULLTEXT index stores words as is
+	 * @param query query to split
+	 * @return list of words
+	 */
+	public static List<String> splitIntoWords(String query)
+	{
+		if(query==null) return Collections.emptyList();
+		Set<String> words = new LinkedHashSet<String>();
+		for(String word : query.split(WORD_SEPARATORS))
+		{
+			if(word.length()>=MIN_WORD_LENGTH) words.add(word);
+		}
+		return new ArrayList<String>(words);
+	}
+
+}
@@ -34,6 +34,7 @@ import org.orienteer.core.component.table.OPropertyValueColumn;
 import org.orienteer.core.component.table.OUnknownEntityColumn;
 import org.orienteer.core.component.visualizer.IVisualizer;
 import org.orienteer.core.component.visualizer.UIVisualizersRegistry;
+import org.orienteer.core.hook.CalculablePropertiesHook;
 import org.orienteer.core.module.OrienteerLocalizationModule;
 import org.orienteer.core.service.IOClassIntrospector;
 import org.orienteer.core.util.CommonUtils;
@@ -82,6 +83,12 @@ public class OClassIntrospector implements IOClassIntrospector
 	
 	@Override
 	public List<OProperty> getDisplayableProperties(OClass oClass) {
+		OSchemaMetadata.OClassMetadata metadata = OSchemaMetadata.get(oClass);
+		return metadata!=null?new ArrayList<OProperty>(metadata.getDisplayableProperties())
+							 :resolveDisplayableProperties(oClass);
+	}
+	
+	static List<OProperty> resolveDisplayableProperties(OClass oClass) {
 		Collection<OProperty> properties =  oClass.properties();
 		Collection<OProperty> filteredProperties = Collections2.filter(properties, PropertyDisplayablePredicate.INSTANCE);
 		if(filteredProperties==null || filteredProperties.isEmpty()) filteredProperties = properties;
@@ -92,27 +99,23 @@ public class OClassIntrospector implements IOClassIntrospector
 	public List<IColumn<ODocument, String>> getColumnsFor(OClass oClass, boolean withCheckbox, IModel<DisplayMode> modeModel) {
 		List<IColumn<ODocument, String>> columns = new ArrayList<IColumn<ODocument,String>>();
 		if(oClass!=null) {
-			List<OProperty> properties = getDisplayableProperties(oClass);
+			OSchemaMetadata.OClassMetadata metadata = OSchemaMetadata.resolve(oClass);
 			if(withCheckbox) columns.add(new CheckBoxColumn<ODocument, ORID, String>(ODocumentORIDConverter.INSTANCE));
-			OProperty nameProperty = getNameProperty(oClass);
-			OEntityColumn entityColumn = new OEntityColumn(nameProperty, true, modeModel);
+			OEntityColumn entityColumn = new OEntityColumn(metadata.getNameProperty(), true, modeModel);
 			columns.add(entityColumn);
-			if (!oClass.getSubclasses().isEmpty()) {
+			if (metadata.hasSubclasses()) {
 				columns.add(new ODocumentClassColumn<String>());
 			}
-			for (OProperty oProperty : properties)
+			for (OSchemaMetadata.OPropertyMetadata propertyMetadata : metadata.getColumnProperties())
 			{
-				if(nameProperty==null || !nameProperty.equals(oProperty))
+				OProperty oProperty = propertyMetadata.getProperty();
+				if(propertyMetadata.isSortable())
 				{
-					Class<?> javaType = oProperty.getType().getDefaultJavaType();
-					if(javaType!=null && Comparable.class.isAssignableFrom(javaType))
-					{
-						columns.add(new OPropertyValueColumn(oProperty.getName(), oProperty, modeModel));
-					}
-					else
-					{
-						columns.add(new OPropertyValueColumn(oProperty, modeModel));
-					}
+					columns.add(new OPropertyValueColumn(oProperty.getName(), oProperty, modeModel));
+				}
+				else
+				{
+					columns.add(new OPropertyValueColumn(oProperty, modeModel));
 				}
 			}
 		} else {
@@ -141,13 +144,17 @@ public class OClassIntrospector implements IOClassIntrospector
 	public ODocument getParent(ODocument doc) {
 		if(doc==null || doc.getSchemaClass()==null) return null;
 		OClass oClass = doc.getSchemaClass();
-		OProperty parent = CustomAttributes.PROP_PARENT.getHierarchicalValue(oClass);
+		OSchemaMetadata.OClassMetadata metadata = OSchemaMetadata.get(oClass);
+		OProperty parent = metadata!=null?metadata.getParentProperty()
+										 :CustomAttributes.PROP_PARENT.<OProperty>getHierarchicalValue(oClass);
 		if(parent!=null) return doc.field(parent.getName());
 		else return null;
 	}
 
 	@Override
 	public List<String> listTabs(OClass oClass) {
+		OSchemaMetadata.OClassMetadata metadata = OSchemaMetadata.get(oClass);
+		if(metadata!=null) return new ArrayList<String>(metadata.getTabs());
 		Set<String> tabs = new HashSet<String>();
 		for(OProperty property: oClass.properties())
 		{
@@ -163,7 +170,27 @@ public class OClassIntrospector implements IOClassIntrospector
 	public List<OProperty> listProperties(OClass oClass, String tab, final Boolean extended) {
 		final String safeTab = tab!=null?tab:DEFAULT_TAB;
 		final UIVisualizersRegistry registry = OrienteerWebApplication.get().getUIVisualizersRegistry();
-		
+		OSchemaMetadata.OClassMetadata metadata = OSchemaMetadata.get(oClass);
+		if(metadata!=null)
+		{
+			List<OProperty> ret = new ArrayList<OProperty>();
+			for(OSchemaMetadata.OPropertyMetadata propertyMetadata : metadata.getPropertiesOfTab(safeTab))
+			{
+				if(extended!=null)
+				{
+					String component = propertyMetadata.getVisualization();
+					boolean isExtended = false;
+					if(component!=null)
+					{
+						IVisualizer visualizer = registry.getComponentFactory(propertyMetadata.getProperty().getType(), component);
+						isExtended = visualizer!=null?visualizer.isExtended():false;
+					}
+					if(isExtended!=extended) continue;
+				}
+				ret.add(propertyMetadata.getProperty());
+			}
+			return ret;
+		}
 		return listProperties(oClass, new Predicate<OProperty>() {
 
 			@Override
@@ -216,6 +243,11 @@ public class OClassIntrospector implements IOClassIntrospector
 	@Override
 	public OProperty getNameProperty(OClass oClass) {
 		if(oClass==null) return null;
+		OSchemaMetadata.OClassMetadata metadata = OSchemaMetadata.get(oClass);
+		return metadata!=null?metadata.getNameProperty():resolveNameProperty(oClass);
+	}
+	
+	static OProperty resolveNameProperty(OClass oClass) {
 		OProperty ret = CustomAttributes.PROP_NAME.getHierarchicalValue(oClass);
 		if(ret!=null) return ret;
 		ret = oClass.getProperty("name");
@@ -240,6 +272,7 @@ public class OClassIntrospector implements IOClassIntrospector
 			OProperty nameProp = getNameProperty(doc.getSchemaClass());
 			if(nameProp!=null)
 			{
+				CalculablePropertiesHook.calculateLazy(doc, nameProp.getName());
 				Object value = doc.field(nameProp.getName());
 				if(value==null) return Application.get().getResourceSettings().getLocalizer().getString("noname", null);
 				OType type = nameProp.getType();
@@ -0,0 +1,296 @@
+package org.orienteer.core.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.service.IOClassIntrospector;
+import org.orienteer.core.util.SchemaSnapshotCache;
+import org.orienteer.core.util.SchemaSnapshotCache.ISnapshotFactory;
+
+import ru.ydn.wicket.wicketorientdb.proto.IPrototype;
+
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+
+/**
+ * Immutable snapshot of Orienteer {@link CustomAttributes} for all classes and properties of a database.
+ * Snapshot is built once per database URL and schema version by {@link SchemaSnapshotCache} and shared between all sessions.
+ */
+public final class OSchemaMetadata
+{
+	private static final SchemaSnapshotCache<OSchemaMetadata> CACHE = new SchemaSnapshotCache<OSchemaMetadata>(new ISnapshotFactory<OSchemaMetadata>() {
+
+		@Override
+		public OSchemaMetadata build(int schemaVersion, OSchema schema) {
+			return new OSchemaMetadata(schemaVersion, schema);
+		}
+	});
+	
+	private final int schemaVersion;
+	private final Map<String, OClassMetadata> classes;
+	private final List<OProperty> searchableProperties;
+	
+	/**
+	 * Precomputed metadata of an {@link OClass}
+	 */
+	public static final class OClassMetadata
+	{
+		private final OClass oClass;
+		private final List<OProperty> displayableProperties;
+		private final OProperty nameProperty;
+		private final OProperty parentProperty;
+		private final List<String> tabs;
+		private final Map<String, List<OPropertyMetadata>> propertiesByTab;
+		private final Map<String, OPropertyMetadata> properties;
+		private final List<OPropertyMetadata> columnProperties;
+		private final boolean hasSubclasses;
+		
+		private OClassMetadata(OClass oClass)
+		{
+			this.oClass = oClass;
+			this.displayableProperties = Collections.unmodifiableList(OClassIntrospector.resolveDisplayableProperties(oClass));
+			this.nameProperty = OClassIntrospector.resolveNameProperty(oClass);
+			this.parentProperty = CustomAttributes.PROP_PARENT.getHierarchicalValue(oClass);
+			this.hasSubclasses = !oClass.getSubclasses().isEmpty();
+			Map<String, OPropertyMetadata> properties = new LinkedHashMap<String, OPropertyMetadata>();
+			Map<String, List<OPropertyMetadata>> propertiesByTab = new HashMap<String, List<OPropertyMetadata>>();
+			Set<String> tabs = new HashSet<String>();
+			for(OProperty property : OClassIntrospector.ORDER_PROPERTIES_BY_ORDER.sortedCopy(oClass.properties()))
+			{
+				OPropertyMetadata propertyMetadata = new OPropertyMetadata(property);
+				properties.put(property.getName(), propertyMetadata);
+				tabs.add(propertyMetadata.tab);
+				if(!propertyMetadata.hidden)
+				{
+					List<OPropertyMetadata> inTab = propertiesByTab.get(propertyMetadata.tab);
+					if(inTab==null)
+					{
+						inTab = new ArrayList<OPropertyMetadata>();
+						propertiesByTab.put(propertyMetadata.tab, inTab);
+					}
+					inTab.add(propertyMetadata);
+				}
+			}
+			this.properties = Collections.unmodifiableMap(properties);
+			this.propertiesByTab = Collections.unmodifiableMap(propertiesByTab);
+			this.tabs = Collections.unmodifiableList(new ArrayList<String>(tabs));
+			List<OPropertyMetadata> columnProperties = new ArrayList<OPropertyMetadata>(displayableProperties.size());
+			for(OProperty property : displayableProperties)
+			{
+				if(nameProperty==null || !nameProperty.equals(property))
+				{
+					OPropertyMetadata propertyMetadata = properties.get(property.getName());
+					columnProperties.add(propertyMetadata!=null?propertyMetadata:new OPropertyMetadata(property));
+				}
+			}
+			this.columnProperties = Collections.unmodifiableList(columnProperties);
+		}
+		
+		public OClass getOClass()
+		{
+			return oClass;
+		}
+		
+		public List<OProperty> getDisplayableProperties()
+		{
+			return displayableProperties;
+		}
+		
+		public OProperty getNameProperty()
+		{
+			return nameProperty;
+		}
+		
+		public OProperty getParentProperty()
+		{
+			return parentProperty;
+		}
+		
+		public List<String> getTabs()
+		{
+			return tabs;
+		}
+		
+		/**
+		 * @param tab name of a tab
+		 * @return not hidden properties of a tab ordered by {@link CustomAttributes#ORDER}
+		 */
+		public List<OPropertyMetadata> getPropertiesOfTab(String tab)
+		{
+			List<OPropertyMetadata> ret = propertiesByTab.get(tab);
+			return ret!=null?Collections.unmodifiableList(ret):Collections.<OPropertyMetadata>emptyList();
+		}
+		
+		public OPropertyMetadata getProperty(String name)
+		{
+			return properties.get(name);
+		}
+		
+		/**
+		 * @return displayable properties except name property: properties to be shown as table columns
+		 */
+		public List<OPropertyMetadata> getColumnProperties()
+		{
+			return columnProperties;
+		}
+		
+		public boolean hasSubclasses()
+		{
+			return hasSubclasses;
+		}
+	}
+	
+	/**
+	 * Precomputed metadata of an {@link OProperty}
+	 */
+	public static final class OPropertyMetadata
+	{
+		private final OProperty property;
+		private final String tab;
+		private final boolean hidden;
+		private final boolean displayable;
+		private final String visualization;
+		private final boolean sortable;
+		private final boolean readonly;
+		private final boolean required;
+		
+		private OPropertyMetadata(OProperty property)
+		{
+			Class<?> javaType = property.getType().getDefaultJavaType();
+			this.sortable = javaType!=null && Comparable.class.isAssignableFrom(javaType);
+			this.property = property;
+			this.tab = CustomAttributes.TAB.getValue(property, IOClassIntrospector.DEFAULT_TAB);
+			this.hidden = CustomAttributes.HIDDEN.getValue(property, false);
+			this.displayable = CustomAttributes.DISPLAYABLE.getValue(property, false);
+			this.visualization = CustomAttributes.VISUALIZATION_TYPE.getValue(property);
+			this.readonly = property.isReadonly() || (Boolean)CustomAttributes.UI_READONLY.getValue(property);
+			this.required = property.isNotNull();
+		}
+		
+		public OProperty getProperty()
+		{
+			return property;
+		}
+		
+		public String getTab()
+		{
+			return tab;
+		}
+		
+		public boolean isHidden()
+		{
+			return hidden;
+		}
+		
+		public boolean isDisplayable()
+		{
+			return displayable;
+		}
+		
+		public String getVisualization()
+		{
+			return visualization;
+		}
+		
+		/**
+		 * @return true if values of the property can be used for sorting
+		 */
+		public boolean isSortable()
+		{
+			return sortable;
+		}
+		
+		/**
+		 * @return true if the property can't be modified through UI
+		 */
+		public boolean isReadonly()
+		{
+			return readonly;
+		}
+		
+		public boolean isRequired()
+		{
+			return required;
+		}
+	}
+	
+	private OSchemaMetadata(int schemaVersion, OSchema schema)
+	{
+		this.schemaVersion = schemaVersion;
+		Map<String, OClassMetadata> classes = new HashMap<String, OClassMetadata>();
+		List<OProperty> searchableProperties = new ArrayList<OProperty>();
+		for(OClass oClass : schema.getClasses())
+		{
+			classes.put(oClass.getName(), new OClassMetadata(oClass));
+			for(OProperty property : oClass.declaredProperties())
+			{
+				if((Boolean)CustomAttributes.SEARCHABLE.getValue(property)) searchableProperties.add(property);
+			}
+		}
+		this.classes = classes;
+		this.searchableProperties = Collections.unmodifiableList(searchableProperties);
+	}
+	
+	/**
+	 * Obtain actual metadata for a database. Metadata is rebuilt if schema version was changed
+	 * @param db {@link ODatabaseDocument} to obtain metadata for
+	 * @return actual {@link OSchemaMetadata}
+	 */
+	public static OSchemaMetadata get(ODatabaseDocument db)
+	{
+		return CACHE.get(db);
+	}
+	
+	/**
+	 * Lookup precomputed metadata for an {@link OClass} of current database
+	 * @param oClass {@link OClass} to lookup metadata for
+	 * @return {@link OClassMetadata} or null if class is not a part of current schema (for example, it's a prototype)
+	 */
+	public static OClassMetadata get(OClass oClass)
+	{
+		if(oClass==null || oClass instanceof IPrototype) return null;
+		ODatabaseDocument db = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+		if(db==null || db.isClosed()) return null;
+		return get(db).getClassMetadata(oClass.getName());
+	}
+	
+	/**
+	 * Lookup precomputed metadata for an {@link OClass} or build it if class is not a part of current schema
+	 * @param oClass {@link OClass} to lookup metadata for
+	 * @return {@link OClassMetadata} or null if oClass is null
+	 */
+	public static OClassMetadata resolve(OClass oClass)
+	{
+		if(oClass==null) return null;
+		OClassMetadata ret = get(oClass);
+		return ret!=null?ret:new OClassMetadata(oClass);
+	}
+	
+	public int getSchemaVersion()
+	{
+		return schemaVersion;
+	}
+	
+	public OClassMetadata getClassMetadata(String className)
+	{
+		return className!=null?classes.get(className):null;
+	}
+	
+	/**
+	 * @return declared properties of all classes which are marked as {@link CustomAttributes#SEARCHABLE}
+	 */
+	public List<OProperty> getSearchableProperties()
+	{
+		return searchableProperties;
+	}
+}
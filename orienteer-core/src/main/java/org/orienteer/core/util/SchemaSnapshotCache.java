@@ -0,0 +1,71 @@
+package org.orienteer.core.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+
+/**
+ * Holder of immutable snapshots built from a schema of a database.
+ * Snapshot is built once per database URL and schema version and shared between all threads.
+ *
+ * @param <T> the type of a snapshot
+ */
+public final class SchemaSnapshotCache<T>
+{
+	/**
+	 * Factory of snapshots
+	 *
+	 * @param <T> the type of a snapshot
+	 */
+	public static interface ISnapshotFactory<T>
+	{
+		/**
+		 * @param schemaVersion version of a schema
+		 * @param schema {@link OSchema} to build snapshot from
+		 * @return new snapshot
+		 */
+		public T build(int schemaVersion, OSchema schema);
+	}
+
+	private static final class Snapshot<T>
+	{
+		private final int schemaVersion;
+		private final T value;
+
+		public Snapshot(int schemaVersion, T value)
+		{
+			this.schemaVersion = schemaVersion;
+			this.value = value;
+		}
+	}
+
+	private final ConcurrentMap<String, Snapshot<T>> cache = new ConcurrentHashMap<String, Snapshot<T>>();
+	private final ISnapshotFactory<T> factory;
+
+	public SchemaSnapshotCache(ISnapshotFactory<T> factory)
+	{
+		this.factory = factory;
+	}
+
+	/**
+	 * Obtain actual snapshot for a database. Snapshot is rebuilt if schema version differs from the cached one
+	 * @param db {@link ODatabaseDocument} to obtain snapshot for
+	 * @return actual snapshot
+	 */
+	@SuppressWarnings("deprecation")
+	public T get(ODatabaseDocument db)
+	{
+		OSchema schema = db.getMetadata().getSchema();
+		int schemaVersion = schema.getVersion();
+		String url = db.getURL();
+		Snapshot<T> current = cache.get(url);
+		if(current!=null && current.schemaVersion==schemaVersion) return current.value;
+		T value = factory.build(schemaVersion, schema);
+		//Version might go backwards if a database was recreated with the same URL, so any other version is replaced.
+		//Snapshot stored concurrently for another version is simply rebuilt on next call.
+		cache.put(url, new Snapshot<T>(schemaVersion, value));
+		return value;
+	}
+}
@@ -15,17 +15,16 @@ import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
-import org.apache.wicket.util.lang.Objects;
+import org.orienteer.core.OrienteerWebApplication;
 import org.orienteer.core.OrienteerWebSession;
 import org.orienteer.core.component.DefaultPageHeader;
 import org.orienteer.core.component.FAIcon;
 import org.orienteer.core.component.ODocumentPageLink;
 import org.orienteer.core.component.OrienteerFeedbackPanel;
 import org.orienteer.core.model.ODocumentNameModel;
-import org.orienteer.core.module.PerspectivesModule;
+import org.orienteer.core.module.PerspectivesMenuCache;
+import org.orienteer.core.module.PerspectivesMenuCache.MenuItem;
 import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
-import ru.ydn.wicket.wicketorientdb.model.ODocumentPropertyModel;
-import ru.ydn.wicket.wicketorientdb.model.OQueryModel;
 
 import java.util.List;
 
@@ -58,33 +57,27 @@ public abstract class OrienteerBasePage<T> extends BasePage<T>
 		super.initialize();
 		add(new BookmarkablePageLink<T>("home", getApplication().getHomePage()));
 		
-		final AttributeAppender highlightActivePerspective = new AttributeAppender("class", "active")
-		{
-			@Override
-			public boolean isEnabled(Component component) {
-				return Objects.isEqual(getPerspective(), component.getDefaultModelObject());
-			}
-		};
-		
-		add(new ListView<ODocument>("perspectives", new OQueryModel<ODocument>("select from "+PerspectivesModule.OCLASS_PERSPECTIVE)) {
+		add(new ListView<MenuItem>("perspectives", new PropertyModel<List<MenuItem>>(this, "perspectives")) {
 
 			@Override
-			protected void populateItem(ListItem<ODocument> item) {
-				IModel<ODocument> itemModel = item.getModel();
-				Link<ODocument> link = new Link<ODocument>("link", itemModel) {
+			protected void populateItem(ListItem<MenuItem> item) {
+				final MenuItem perspective = item.getModelObject();
+				Link<MenuItem> link = new Link<MenuItem>("link", item.getModel()) {
 
 					@Override
 					public void onClick() {
-						OrienteerWebSession.get().setPerspecive(getModelObject());
+						ODocument perspectiveDoc = OrienteerWebSession.get().getDatabase().load(perspective.getIdentity());
+						if(perspectiveDoc==null) return;
+						OrienteerWebSession.get().setPerspecive(perspectiveDoc);
 						OrienteerBasePage.this.info(
-								getLocalizer().getString("info.perspectivechanged", this, new ODocumentNameModel(getModel()))
+								getLocalizer().getString("info.perspectivechanged", this, new ODocumentNameModel(Model.of(perspectiveDoc)))
 							);
 					}
 				};
-				link.add(new FAIcon("icon", new ODocumentPropertyModel<String>(itemModel, "icon")),
-						 new Label("name",  new ODocumentNameModel(item.getModel())).setRenderBodyOnly(true));
+				link.add(new FAIcon("icon", Model.of(perspective.getIcon())),
+						 new Label("name",  Model.of(perspective.getName())).setRenderBodyOnly(true));
 				item.add(link);
-				item.add(highlightActivePerspective);
+				if(isActivePerspective(perspective)) item.add(new AttributeAppender("class", "active"));
 			}
 		});
 		
@@ -92,8 +85,7 @@ public abstract class OrienteerBasePage<T> extends BasePage<T>
 		add(new BookmarkablePageLink<Object>("login", LoginPage.class).setVisible(!signedIn));
 		add(new BookmarkablePageLink<Object>("logout", LogoutPage.class).setVisible(signedIn));
 
-		IModel<ODocument> perspectiveModel = new PropertyModel<ODocument>(this, "perspective");
-		add(new RecursiveMenuPanel("perspectiveItems", perspectiveModel));
+		add(new RecursiveMenuPanel("perspectiveItems", new PropertyModel<MenuItem>(this, "perspectiveMenu")));
 		
 		
 		add(feedbacks = new OrienteerFeedbackPanel("feedbacks"));
@@ -125,6 +117,31 @@ public abstract class OrienteerBasePage<T> extends BasePage<T>
 		return new DefaultPageHeader(componentId, getTitleModel());
 	}
 
+	/**
+	 * @return resolved menus of all available perspectives
+	 */
+	public List<MenuItem> getPerspectives() {
+		OrienteerWebSession session = OrienteerWebSession.get();
+		return getPerspectivesMenuCache().getPerspectives(session.getDatabase(), session.getLocale());
+	}
+	
+	/**
+	 * @return resolved menu of current perspective
+	 */
+	public MenuItem getPerspectiveMenu() {
+		OrienteerWebSession session = OrienteerWebSession.get();
+		return getPerspectivesMenuCache().getPerspective(session.getDatabase(), session.getLocale(), getPerspective());
+	}
+	
+	private boolean isActivePerspective(MenuItem perspective) {
+		ODocument current = getPerspective();
+		return current!=null && perspective.getIdentity().equals(current.getIdentity());
+	}
+	
+	private PerspectivesMenuCache getPerspectivesMenuCache() {
+		return OrienteerWebApplication.get().getServiceInstance(PerspectivesMenuCache.class);
+	}
+
 	public OrienteerFeedbackPanel getFeedbacks() {
 		return feedbacks;
 	}
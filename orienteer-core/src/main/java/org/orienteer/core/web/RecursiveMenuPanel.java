@@ -1,7 +1,5 @@
 package org.orienteer.core.web;
 
-import com.orientechnologies.orient.core.record.impl.ODocument;
-
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.IHeaderResponse;
@@ -11,26 +9,20 @@ import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.link.ExternalLink;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
-import org.apache.wicket.markup.html.panel.EmptyPanel;
 import org.apache.wicket.markup.html.panel.GenericPanel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
 import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.request.cycle.RequestCycle;
-import org.apache.wicket.util.visit.IVisit;
-import org.apache.wicket.util.visit.IVisitor;
 import org.orienteer.core.component.FAIcon;
-import org.orienteer.core.model.ODocumentNameModel;
-import org.orienteer.core.module.PerspectivesModule;
-
-import ru.ydn.wicket.wicketorientdb.model.ODocumentPropertyModel;
+import org.orienteer.core.module.PerspectivesMenuCache.MenuItem;
 
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Panel to display recursive tree menu.
  */
-public class RecursiveMenuPanel extends GenericPanel<ODocument> {
+public class RecursiveMenuPanel extends GenericPanel<MenuItem> {
 	
 	private int level = -1;
 
@@ -44,43 +36,31 @@ public class RecursiveMenuPanel extends GenericPanel<ODocument> {
 		}
     }
 
-    public RecursiveMenuPanel(String id, IModel<ODocument> item) {
+    public RecursiveMenuPanel(String id, IModel<MenuItem> item) {
         super(id, item);
         setOutputMarkupId(true);
-        add(new ListView<ODocument>("items", new PropertyModel<List<ODocument>>(this, "items")) {
+        add(new ListView<MenuItem>("items", new PropertyModel<List<MenuItem>>(this, "items")) {
 
             @Override
-            protected void populateItem(ListItem<ODocument> item) {
-                IModel<ODocument> itemModel = item.getModel();
-                ODocumentPropertyModel<String> urlModel = new ODocumentPropertyModel<String>(itemModel, "url");
-                ODocumentPropertyModel<List<ODocument>> subItems = new ODocumentPropertyModel<List<ODocument>>(itemModel, "subItems");
-                final boolean hasSubItems = subItems.getObject() != null && !subItems.getObject().isEmpty();
-                ExternalLink link = new ExternalLink("link", urlModel)
+            protected void populateItem(ListItem<MenuItem> item) {
+                MenuItem menuItem = item.getModelObject();
+                ExternalLink link = new ExternalLink("link", Model.of(menuItem.getUrl()))
                         .setContextRelative(true);
-                link.add(new FAIcon("icon", new ODocumentPropertyModel<String>(itemModel, "icon")),
-                        new Label("name", new ODocumentNameModel(item.getModel())).setRenderBodyOnly(true),
-                        new WebMarkupContainer("menuLevelGlyph").setVisibilityAllowed(hasSubItems));
+                link.add(new FAIcon("icon", Model.of(menuItem.getIcon())),
+                        new Label("name", Model.of(menuItem.getName())).setRenderBodyOnly(true),
+                        new WebMarkupContainer("menuLevelGlyph").setVisibilityAllowed(menuItem.hasItems()));
                 item.add(link);
-                if (isActiveItem(urlModel)) {
+                if (isActiveItem(menuItem.getUrl())) {
                     item.add(new AttributeModifier("class", "active"));
                 }
-                item.add(new RecursiveMenuPanel("subItems", itemModel)); 
+                item.add(new RecursiveMenuPanel("subItems", item.getModel())); 
             }
         });
     }
     
-    public List<ODocument> getItems() {
-    	return getItems(getModelObject());
-    }
-    
-    public List<ODocument> getItems(ODocument doc) {
-    	if(doc.getSchemaClass().isSubClassOf(PerspectivesModule.OCLASS_PERSPECTIVE)) {
-    		return (List<ODocument>)doc.field("menu");
-    	} else if(doc.getSchemaClass().isSubClassOf(PerspectivesModule.OCLASS_ITEM)) {
-    		return (List<ODocument>)doc.field("subItems");
-    	} else {
-    		return null;
-    	}
+    public List<MenuItem> getItems() {
+    	MenuItem menuItem = getModelObject();
+    	return menuItem!=null?menuItem.getItems():null;
     }
     
     @Override
@@ -121,8 +101,9 @@ public class RecursiveMenuPanel extends GenericPanel<ODocument> {
     	level = parentMenuPanel==null?1:parentMenuPanel.getLevel()+1;
     }
 
-    private boolean isActiveItem(ODocumentPropertyModel<String> urlModel) {
+    private boolean isActiveItem(String url) {
+        if(url==null) return false;
         String currentUrl = RequestCycle.get().getRequest().getUrl().getPath();
-        return currentUrl.equals(urlModel.getObject().replaceFirst("^/", ""));
+        return currentUrl.equals(url.replaceFirst("^/", ""));
     }
 }
@@ -1,5 +1,6 @@
 package org.orienteer.core.web;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.wicket.ajax.AjaxRequestTarget;
@@ -12,7 +13,10 @@ import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.ISortableDataProvider;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.model.ResourceModel;
@@ -26,7 +30,11 @@ import org.orienteer.core.component.command.EditODocumentsCommand;
 import org.orienteer.core.component.command.SaveODocumentsCommand;
 import org.orienteer.core.component.property.DisplayMode;
 import org.orienteer.core.component.table.OrienteerDataTable;
+import org.orienteer.core.model.QuerySizeKeyModel;
+import org.orienteer.core.model.SearchHitsDataProvider;
 import org.orienteer.core.service.IOClassIntrospector;
+import org.orienteer.core.service.ISearchService;
+import org.orienteer.core.service.SearchResults;
 
 import ru.ydn.wicket.wicketorientdb.model.OClassModel;
 import ru.ydn.wicket.wicketorientdb.model.OClassNamingModel;
@@ -36,6 +44,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.Ordering;
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 
 /**
@@ -52,11 +61,16 @@ public class SearchPage extends OrienteerBasePage<String>
 		}
 	});
 	private WebMarkupContainer resultsContainer;
+	private TabsPanel<OClass> tabsPanel;
 	private IModel<OClass> selectedClassModel;
+	private IModel<SearchResults> searchResultsModel;
 	
 	@Inject
 	private IOClassIntrospector oClassIntrospector;
 	
+	@Inject
+	private ISearchService searchService;
+	
 	public SearchPage()
 	{
 		super(Model.of(""));
@@ -79,15 +93,58 @@ public class SearchPage extends OrienteerBasePage<String>
 		return Model.of(query);
 	}
 	
+	/**
+	 * @return classes with hits ordered by relevance if search index is used, followed by classes which should be scanned
+	 */
 	public List<OClass> getClasses()
 	{
-		return CLASSES_ORDERING.sortedCopy(getDatabase().getMetadata().getSchema().getClasses());
+		OSchema schema = getDatabase().getMetadata().getSchema();
+		boolean indexedSearch = isIndexedSearch();
+		List<OClass> ret = new ArrayList<OClass>();
+		if(indexedSearch)
+		{
+			for(String className : searchResultsModel.getObject().getClassNames())
+			{
+				OClass oClass = schema.getClass(className);
+				if(oClass!=null) ret.add(oClass);
+			}
+		}
+		for(OClass oClass : CLASSES_ORDERING.sortedCopy(schema.getClasses()))
+		{
+			//Classes without search indexes are still searched by scanning
+			if(!indexedSearch || !isIndexedSearch(oClass)) ret.add(oClass);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return true if there are searchable properties and search over indexes should be used for classes covered by them
+	 */
+	public boolean isIndexedSearch()
+	{
+		return searchService.isSearchEnabled(getDatabase());
+	}
+	
+	/**
+	 * @param oClass {@link OClass} to check
+	 * @return true if search over indexes should be used for the class instead of scanning
+	 */
+	public boolean isIndexedSearch(OClass oClass)
+	{
+		return searchService.isSearchEnabled(getDatabase(), oClass);
 	}
 
 	@Override
 	public void initialize() {
 		super.initialize();
-		selectedClassModel = new OClassModel(getClasses().get(0));
+		searchResultsModel = new LoadableDetachableModel<SearchResults>() {
+			@Override
+			protected SearchResults load() {
+				return searchService.search(getDatabase(), SearchPage.this.getModelObject());
+			}
+		};
+		List<OClass> classes = getClasses();
+		selectedClassModel = new OClassModel(classes.isEmpty()?null:classes.get(0));
 		
 		Form<String> form = new Form<String>("form", getModel());
 		form.add(new TextField<String>("query", getModel()));
@@ -96,11 +153,22 @@ public class SearchPage extends OrienteerBasePage<String>
 			@Override
 			protected void onSubmit(AjaxRequestTarget target, Form<?> form) {
 				super.onSubmit(target, form);
+				if(isIndexedSearch())
+				{
+					searchResultsModel.detach();
+					List<OClass> classes = getClasses();
+					if(!classes.contains(selectedClassModel.getObject()))
+					{
+						selectedClassModel.setObject(classes.isEmpty()?null:classes.get(0));
+					}
+					prepareResults();
+					target.add(tabsPanel);
+				}
 				target.add(resultsContainer);
 			}
 		});
 		
-		form.add(new TabsPanel<OClass>("tabs", selectedClassModel, new PropertyModel<List<OClass>>(this, "classes"))
+		form.add(tabsPanel = new TabsPanel<OClass>("tabs", selectedClassModel, new PropertyModel<List<OClass>>(this, "classes"))
 				{
 
 					@Override
@@ -108,6 +176,25 @@ public class SearchPage extends OrienteerBasePage<String>
 						prepareResults();
 						target.add(resultsContainer);
 					}
+					
+					@Override
+					protected IModel<String> newTabNameModel(final IModel<OClass> tabModel) {
+						final IModel<String> nameModel = new OClassNamingModel(tabModel);
+						return new AbstractReadOnlyModel<String>() {
+							@Override
+							public String getObject() {
+								OClass oClass = tabModel.getObject();
+								if(!isIndexedSearch(oClass)) return nameModel.getObject();
+								int hits = searchResultsModel.getObject().getHitsCount(oClass.getName());
+								return nameModel.getObject()+" ("+hits+")";
+							}
+							
+							@Override
+							public void detach() {
+								nameModel.detach();
+							}
+						};
+					}
 			
 				});
 		
@@ -137,17 +224,40 @@ public class SearchPage extends OrienteerBasePage<String>
 	
 	private void prepareResults(OClass oClass)
 	{
-		OQueryDataProvider<ODocument> provider = 
-				new OQueryDataProvider<ODocument>("select from "+oClass.getName()+" where any() containstext :text");
-		provider.setParameter("text", getModel());
+		if(oClass==null)
+		{
+			resultsContainer.addOrReplace(new WebMarkupContainer("results").setVisible(false));
+			return;
+		}
+		ISortableDataProvider<ODocument, String> provider;
+		IModel<String> sizeKeyModel = null;
+		if(isIndexedSearch(oClass))
+		{
+			provider = new SearchHitsDataProvider(searchResultsModel, oClass.getName());
+		}
+		else
+		{
+			String sql = "select from "+oClass.getName()+" where any() containstext :text";
+			OQueryDataProvider<ODocument> queryProvider = new OQueryDataProvider<ODocument>(sql);
+			queryProvider.setParameter("text", getModel());
+			provider = queryProvider;
+			sizeKeyModel = new QuerySizeKeyModel(sql, getModel());
+		}
 		IModel<DisplayMode> modeModel = DisplayMode.VIEW.asModel();
 		OrienteerDataTable<ODocument, String> table = 
 				new OrienteerDataTable<ODocument, String>("results", oClassIntrospector.getColumnsFor(oClass, false, modeModel), provider, 20);
+		if(sizeKeyModel!=null) table.setSizeKeyModel(sizeKeyModel);
 		table.addCommand(new EditODocumentsCommand(table, modeModel, oClass));
 		table.addCommand(new SaveODocumentsCommand(table, modeModel));
 		resultsContainer.addOrReplace(table);
 	}
 
+	@Override
+	protected void onDetach() {
+		super.onDetach();
+		if(searchResultsModel!=null) searchResultsModel.detach();
+	}
+
 	@Override
 	public IModel<String> getTitleModel() {
 		return new ResourceModel("search.title");
@@ -37,6 +37,7 @@ import org.apache.wicket.util.visit.IVisitor;
 import org.orienteer.core.OrienteerWebSession;
 import org.orienteer.core.component.meta.IDisplayModeAware;
 import org.orienteer.core.component.property.DisplayMode;
+import org.orienteer.core.hook.ReferencesConsistencyHook;
 import org.orienteer.core.module.OWidgetsModule;
 import org.orienteer.core.widget.command.AddWidgetCommand;
 import org.orienteer.core.widget.command.KeepUnsavedDashboardCommand;
@@ -54,6 +55,8 @@ import com.google.common.base.Predicate;
 import com.google.common.reflect.TypeToken;
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 
@@ -173,15 +176,38 @@ public class DashboardPanel<T> extends GenericPanel<T> implements IDisplayModeAw
 	private AbstractWidget<T> createWidgetFromDocument(ODocument widgetDoc) {
 		IWidgetType<T> type = null;
 		if(widgetDoc!=null) type = (IWidgetType<T>)widgetTypesRegistry.lookupByTypeId((String)widgetDoc.field(OPROPERTY_TYPE_ID));
+		if(type!=null && Boolean.TRUE.equals(widgetDoc.field(OPROPERTY_LAZY))) {
+			return new LazyWidget<T>(newWidgetId(), getModel(), new ODocumentModel(widgetDoc), type.getId());
+		}
 		return  type!=null ? type.instanciate(newWidgetId(), getModel(), widgetDoc)
 						   : new NotFoundWidget<T>(newWidgetId(), getModel(), new ODocumentModel(widgetDoc));
 	}
 	
 	/**
-	 * Store dashboard configuration in a document
+	 * Store dashboard configuration in a document.
+	 * Everything is saved in a single transaction and only changed documents are saved.
+	 * Links between dashboard and widgets are maintained directly, so {@link ReferencesConsistencyHook} skips
+	 * dashboard and widget documents. Other documents saved by widgets are processed as usual.
 	 * @return document - can't be null
 	 */
 	public ODocument storeDashboard() {
+		ODatabaseDocument db = OrienteerWebSession.get().getDatabase();
+		boolean inTransaction = db.getTransaction().isActive();
+		Set<String> skippedClasses = ReferencesConsistencyHook.skipClasses(OCLASS_DASHBOARD, OCLASS_WIDGET);
+		try {
+			if(!inTransaction) db.begin();
+			ODocument doc = storeDashboardDocuments();
+			if(!inTransaction) db.commit();
+			return doc;
+		} catch (RuntimeException e) {
+			if(!inTransaction) db.rollback();
+			throw e;
+		} finally {
+			ReferencesConsistencyHook.restoreSkippedClasses(skippedClasses);
+		}
+	}
+	
+	private ODocument storeDashboardDocuments() {
 		ODocument doc = dashboardDocumentModel.getObject();
 		if(doc==null) {
 			doc = new ODocument(OCLASS_DASHBOARD);
@@ -191,20 +217,47 @@ public class DashboardPanel<T> extends GenericPanel<T> implements IDisplayModeAw
 			dashboardDocumentModel.setObject(doc);
 		}
 		
+		List<OIdentifiable> oldWidgets = doc.field(OPROPERTY_WIDGETS);
+		List<ORID> oldWidgetIds = new ArrayList<ORID>();
+		if(oldWidgets!=null) {
+			for (OIdentifiable oldWidget : oldWidgets) {
+				if(oldWidget!=null) oldWidgetIds.add(oldWidget.getIdentity());
+			}
+		}
+		
 		List<AbstractWidget<T>> components = getWidgets();
 		List<ODocument> widgets = new ArrayList<ODocument>();
+		List<ORID> widgetIds = new ArrayList<ORID>();
 		for (AbstractWidget<T> widget : components) {
 			widget.saveSettings();
 			ODocument widgetDoc = widget.getWidgetDocument();
-			widgetDoc.save();
+			if(!isLinkedTo(widgetDoc.rawField(OPROPERTY_DASHBOARD), doc)) widgetDoc.field(OPROPERTY_DASHBOARD, doc);
+			if(widgetDoc.isDirty() || !widgetDoc.getIdentity().isPersistent()) widgetDoc.save();
 			widgets.add(widgetDoc);
+			widgetIds.add(widgetDoc.getIdentity());
+		}
+		
+		for (ORID oldWidgetId : oldWidgetIds) {
+			if(!widgetIds.contains(oldWidgetId)) {
+				ODocument oldWidgetDoc = oldWidgetId.getRecord();
+				if(oldWidgetDoc!=null && isLinkedTo(oldWidgetDoc.rawField(OPROPERTY_DASHBOARD), doc)) {
+					oldWidgetDoc.field(OPROPERTY_DASHBOARD, (Object) null);
+					oldWidgetDoc.save();
+				}
+			}
 		}
-		doc.field(OPROPERTY_WIDGETS, widgets);
 		
-		doc.save();
+		if(!widgetIds.equals(oldWidgetIds)) doc.field(OPROPERTY_WIDGETS, widgets);
+		if(doc.isDirty() || !doc.getIdentity().isPersistent()) doc.save();
 		return doc;
 	}
 	
+	private static boolean isLinkedTo(Object link, ODocument doc) {
+		if(link==doc) return true;
+		return link instanceof OIdentifiable && doc.getIdentity().isValid() 
+				&& doc.getIdentity().equals(((OIdentifiable)link).getIdentity());
+	}
+	
 	public String newWidgetId()
 	{
 		return widgets.newChildId();
@@ -1,6 +1,8 @@
 package org.orienteer.core.widget;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -8,19 +10,30 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.string.Strings;
+import org.orienteer.core.OrienteerWebApplication;
 import org.orienteer.core.OrienteerWebSession;
+import org.orienteer.core.hook.CommitActions;
 
 import static org.orienteer.core.module.OWidgetsModule.*;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.hook.ORecordHook;
+import com.orientechnologies.orient.core.hook.ORecordHook.DISTRIBUTED_EXECUTION_MODE;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.record.impl.ODocument;
@@ -32,8 +45,142 @@ import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 @Singleton
 public class DefaultDashboardManager implements IDashboardManager{
 	
+	private static final int CACHE_SIZE = 10000;
+	
+	/**
+	 * {@link ORecordHook} to invalidate cache of resolved dashboards if dashboards were changed.
+	 * Only identities of dashboards are cached, so changes of widgets and of lists of widgets don't require invalidation.
+	 * Cache is invalidated after commit for domains of changed dashboards only.
+	 */
+	public static class DashboardInvalidationHook extends ODocumentHookAbstract {
+		
+		public DashboardInvalidationHook(ODatabaseDocument database) {
+			super(database);
+			setIncludeClasses(OCLASS_DASHBOARD);
+		}
+		
+		private void invalidateOnCommit(ODocument iDocument, boolean updated)
+		{
+			final Set<String> domains = new HashSet<String>();
+			domains.add((String)iDocument.field(OPROPERTY_DOMAIN));
+			if(updated)
+			{
+				String[] dirtyFields = iDocument.getDirtyFields();
+				boolean resolutionChanged = false;
+				if(dirtyFields!=null)
+				{
+					for(String field : dirtyFields)
+					{
+						if(OPROPERTY_WIDGETS.equals(field)) continue;
+						resolutionChanged = true;
+						if(OPROPERTY_DOMAIN.equals(field)) domains.add((String)iDocument.getOriginalValue(field));
+					}
+				}
+				if(!resolutionChanged) return;
+			}
+			CommitActions.runOnCommit(iDocument.getDatabase(), new Runnable() {
+				
+				@Override
+				public void run() {
+					OrienteerWebApplication app = OrienteerWebApplication.lookupApplication();
+					if(app!=null)
+					{
+						IDashboardManager manager = app.getServiceInstance(IDashboardManager.class);
+						if(manager instanceof DefaultDashboardManager) ((DefaultDashboardManager)manager).invalidateCache(domains);
+					}
+				}
+			});
+		}
+		
+		@Override
+		public void onRecordAfterCreate(ODocument iDocument) {
+			invalidateOnCommit(iDocument, false);
+		}
+
+		@Override
+		public void onRecordAfterUpdate(ODocument iDocument) {
+			invalidateOnCommit(iDocument, true);
+		}
+
+		@Override
+		public void onRecordAfterDelete(ODocument iDocument) {
+			invalidateOnCommit(iDocument, false);
+		}
+
+		@Override
+		public DISTRIBUTED_EXECUTION_MODE getDistributedExecutionMode() {
+			return DISTRIBUTED_EXECUTION_MODE.BOTH;
+		}
+	}
+	
+	/**
+	 * Key for resolution of a dashboard: domain, tab, class and additional criteries
+	 */
+	private static class DashboardKey
+	{
+		private final String domain;
+		private final String tab;
+		private final String className;
+		private final Map<String, Object> criteries;
+		
+		private DashboardKey(String domain, String tab, String className, Map<String, Object> criteries)
+		{
+			this.domain = domain;
+			this.tab = tab;
+			this.className = className;
+			this.criteries = criteries;
+		}
+		
+		/**
+		 * @return key or null if result can't be cached: for example, some criteries refer to not yet saved documents
+		 */
+		public static DashboardKey create(String domain, String tab, OClass oClass, Map<String, Object> criteriesMap)
+		{
+			Map<String, Object> criteries = null;
+			if(criteriesMap!=null && !criteriesMap.isEmpty())
+			{
+				criteries = new HashMap<String, Object>();
+				for(Map.Entry<String, Object> entry: criteriesMap.entrySet()) {
+					Object value = entry.getValue();
+					if(value instanceof OIdentifiable)
+					{
+						ORID rid = ((OIdentifiable)value).getIdentity();
+						if(rid==null || !rid.isPersistent()) return null;
+						value = rid.copy();
+					}
+					else if(value!=null && !(value instanceof String || value instanceof Number || value instanceof Boolean))
+					{
+						return null;
+					}
+					criteries.put(entry.getKey(), value);
+				}
+			}
+			return new DashboardKey(domain, tab, oClass!=null?oClass.getName():null, criteries);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(new Object[]{domain, tab, className, criteries});
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this==obj) return true;
+			if(!(obj instanceof DashboardKey)) return false;
+			DashboardKey other = (DashboardKey) obj;
+			return Objects.equal(domain, other.domain)
+					&& Objects.equal(tab, other.tab)
+					&& Objects.equal(className, other.className)
+					&& Objects.equal(criteries, other.criteries);
+		}
+	}
+	
 	private IWidgetTypesRegistry widgetRegistry;
 	
+	private final Cache<DashboardKey, Optional<ORID>> cache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+	private final AtomicInteger generation = new AtomicInteger();
+	private volatile int schemaVersion = -1;
+	
 	@Inject
 	public DefaultDashboardManager(IWidgetTypesRegistry widgetRegistry) {
 		this.widgetRegistry = widgetRegistry;
@@ -57,12 +204,7 @@ public class DefaultDashboardManager implements IDashboardManager{
 	
 	@Override
 	public ODocument getExistingDashboard(String domain, String tab, IModel<?> dataModel) {
-		ODatabaseDocument db = getDatabase();
-		List<ODocument>  dashboards = db.query(new OSQLSynchQuery<ODocument>("select from "+OCLASS_DASHBOARD+
-											" where "+OPROPERTY_DOMAIN+" = ?"+
-											" and "+OPROPERTY_TAB+" = ?"), domain, tab);
-		if(dashboards==null || dashboards.isEmpty()) return null;
-		else return dashboards.get(0);
+		return getExistingDashboard(domain, tab, dataModel, null, null);
 	}
 	
 	@Override
@@ -79,6 +221,74 @@ public class DefaultDashboardManager implements IDashboardManager{
 	@Override
 	public ODocument getExistingDashboard(String domain, String tab,
 			IModel<?> dataModel, OClass oClass, Map<String, Object> criteriesMap) {
+		ODatabaseDocument db = getDatabase();
+		DashboardKey key = db.getTransaction().isActive()?null:DashboardKey.create(domain, tab, oClass, criteriesMap);
+		if(key==null) return findDashboard(db, domain, tab, oClass, criteriesMap);
+		checkSchemaVersion(db);
+		Optional<ORID> cached = cache.getIfPresent(key);
+		if(cached!=null)
+		{
+			if(!cached.isPresent()) return null;
+			ODocument dashboard = db.load(cached.get());
+			if(dashboard!=null) return dashboard;
+			cache.invalidate(key);
+		}
+		int currentGeneration = generation.get();
+		ODocument dashboard = findDashboard(db, domain, tab, oClass, criteriesMap);
+		ORID rid = dashboard!=null?dashboard.getIdentity():null;
+		if(rid==null || rid.isPersistent())
+		{
+			//Don't cache results which might be affected by concurrent invalidation
+			synchronized (generation)
+			{
+				if(currentGeneration==generation.get()) 
+					cache.put(key, Optional.fromNullable(rid!=null?rid.copy():null));
+			}
+		}
+		return dashboard;
+	}
+	
+	/**
+	 * Invalidate cache of resolved dashboards
+	 */
+	public void invalidateCache()
+	{
+		synchronized (generation)
+		{
+			generation.incrementAndGet();
+			cache.invalidateAll();
+		}
+	}
+	
+	/**
+	 * Invalidate cache of resolved dashboards for specified domains
+	 * @param domains domains to invalidate dashboards of
+	 */
+	public void invalidateCache(Collection<String> domains)
+	{
+		synchronized (generation)
+		{
+			generation.incrementAndGet();
+			Iterator<DashboardKey> it = cache.asMap().keySet().iterator();
+			while(it.hasNext())
+			{
+				if(domains.contains(it.next().domain)) it.remove();
+			}
+		}
+	}
+	
+	@SuppressWarnings("deprecation")
+	private void checkSchemaVersion(ODatabaseDocument db)
+	{
+		int version = db.getMetadata().getSchema().getVersion();
+		if(version!=schemaVersion)
+		{
+			invalidateCache();
+			schemaVersion = version;
+		}
+	}
+	
+	private ODocument findDashboard(ODatabaseDocument db, String domain, String tab, OClass oClass, Map<String, Object> criteriesMap) {
 		StringBuilder sql = new StringBuilder();
 		sql.append("select from ").append(OCLASS_DASHBOARD).append(" where ")
 		   .append(OPROPERTY_DOMAIN).append(" = ? and ")
@@ -92,7 +302,6 @@ public class DefaultDashboardManager implements IDashboardManager{
 				args.add(entry.getValue());
 			}
 		}
-		ODatabaseDocument db = getDatabase();
 		List<ODocument>  dashboards = db.query(new OSQLSynchQuery<ODocument>(sql.toString()), args.toArray());
 		if(dashboards==null || dashboards.isEmpty()) return null;
 		else if(oClass!=null) {
@@ -1,12 +1,19 @@
 package org.orienteer.core.widget;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.wicket.WicketRuntimeException;
@@ -17,7 +24,6 @@ import org.orienteer.core.OrienteerWebApplication;
 import ru.ydn.wicket.wicketorientdb.model.ODocumentModel;
 
 import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.ClassPath;
 import com.google.common.reflect.ClassPath.ClassInfo;
@@ -33,12 +39,28 @@ public class DefaultWidgetTypesRegistry implements IWidgetTypesRegistry {
 	
 	private static class AnnotatedWidgetType<T> implements IWidgetType<T> {
 		
+		private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(void.class, String.class, IModel.class, IModel.class);
+		private static final MethodType FACTORY_TYPE = MethodType.methodType(AbstractWidget.class, String.class, IModel.class, IModel.class);
+		
 		private Class<? extends AbstractWidget<T>> widgetClass;
 		private Widget widget;
+		private transient MethodHandle factory;
 		
 		private AnnotatedWidgetType(Class<? extends AbstractWidget<T>> widgetClass, Widget widget) {
 			this.widgetClass = widgetClass;
 			this.widget = widget;
+			this.factory = resolveFactory(widgetClass);
+		}
+		
+		/**
+		 * Resolve constructor (String, IModel, IModel) once to avoid reflection on every instantiation
+		 */
+		private static MethodHandle resolveFactory(Class<?> widgetClass) {
+			try {
+				return MethodHandles.publicLookup().findConstructor(widgetClass, CONSTRUCTOR_TYPE).asType(FACTORY_TYPE);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				return null;
+			}
 		}
 		
 		public static <T> IWidgetType<T> create(Class<? extends AbstractWidget<T>> widgetClass) {
@@ -86,15 +108,20 @@ public class DefaultWidgetTypesRegistry implements IWidgetTypesRegistry {
 			return widgetClass;
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
 		public AbstractWidget<T> instanciate(String componentId, IModel<T> model, ODocument widgetDoc) {
+			MethodHandle factory = this.factory;
+			if(factory==null) this.factory = factory = resolveFactory(widgetClass);
+			if(factory==null) throw new WicketRuntimeException("Can't instanciate widget for descriptor: "+this
+																+". Public constructor (String, IModel, IModel) is required");
 			try {
-				return getWidgetClass()
-						.getConstructor(String.class, IModel.class, IModel.class)
-						.newInstance(componentId, model, new ODocumentModel(widgetDoc));
-			} catch (Exception e) {
+				return (AbstractWidget<T>) factory.invokeExact(componentId, (IModel<?>) model, (IModel<?>) new ODocumentModel(widgetDoc));
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
 				throw new WicketRuntimeException("Can't instanciate widget for descriptor: "+this , e);
-			} 
+			}
 		}
 
 		@Override
@@ -103,7 +130,78 @@ public class DefaultWidgetTypesRegistry implements IWidgetTypesRegistry {
 		}
 	}
 	
-	private TreeSet<IWidgetType<?>> widgetDescriptions = new TreeSet<IWidgetType<?>>(new Comparator<IWidgetType<?>>() {
+	/**
+	 * Immutable index of registered widget types
+	 */
+	private static class WidgetTypesIndex {
+		private final List<IWidgetType<?>> all;
+		private final Map<String, IWidgetType<?>> byId = new HashMap<String, IWidgetType<?>>();
+		private final Map<Class<?>, IWidgetType<?>> byWidgetClass = new HashMap<Class<?>, IWidgetType<?>>();
+		private final Map<String, List<IWidgetType<?>>> byDomain = new HashMap<String, List<IWidgetType<?>>>();
+		private final Map<String, List<IWidgetType<?>>> withoutTabByDomain = new HashMap<String, List<IWidgetType<?>>>();
+		private final Map<String, Map<String, List<IWidgetType<?>>>> byDomainAndTab = new HashMap<String, Map<String,List<IWidgetType<?>>>>();
+		
+		public WidgetTypesIndex(Collection<IWidgetType<?>> widgetTypes) {
+			all = Collections.unmodifiableList(new ArrayList<IWidgetType<?>>(widgetTypes));
+			Map<String, Set<String>> tabsByDomain = new HashMap<String, Set<String>>();
+			for(IWidgetType<?> widgetType : all) {
+				if(!byId.containsKey(widgetType.getId())) byId.put(widgetType.getId(), widgetType);
+				if(!byWidgetClass.containsKey(widgetType.getWidgetClass())) byWidgetClass.put(widgetType.getWidgetClass(), widgetType);
+				String domain = widgetType.getDomain();
+				add(byDomain, domain, widgetType);
+				Set<String> tabs = tabsByDomain.get(domain);
+				if(tabs==null) {
+					tabs = new HashSet<String>();
+					tabsByDomain.put(domain, tabs);
+				}
+				if(Strings.isEmpty(widgetType.getTab())) add(withoutTabByDomain, domain, widgetType);
+				else tabs.add(widgetType.getTab());
+			}
+			for(Map.Entry<String, Set<String>> entry : tabsByDomain.entrySet()) {
+				String domain = entry.getKey();
+				Map<String, List<IWidgetType<?>>> byTab = new HashMap<String, List<IWidgetType<?>>>();
+				for(String tab : entry.getValue()) {
+					List<IWidgetType<?>> inTab = new ArrayList<IWidgetType<?>>();
+					for(IWidgetType<?> widgetType : byDomain.get(domain)) {
+						if(Strings.isEmpty(widgetType.getTab()) || tab.equals(widgetType.getTab())) inTab.add(widgetType);
+					}
+					byTab.put(tab, Collections.unmodifiableList(inTab));
+				}
+				byDomainAndTab.put(domain, byTab);
+			}
+			seal(byDomain);
+			seal(withoutTabByDomain);
+		}
+		
+		private static void add(Map<String, List<IWidgetType<?>>> map, String key, IWidgetType<?> widgetType) {
+			List<IWidgetType<?>> list = map.get(key);
+			if(list==null) {
+				list = new ArrayList<IWidgetType<?>>();
+				map.put(key, list);
+			}
+			list.add(widgetType);
+		}
+		
+		private static void seal(Map<String, List<IWidgetType<?>>> map) {
+			for(Map.Entry<String, List<IWidgetType<?>>> entry : map.entrySet()) {
+				entry.setValue(Collections.unmodifiableList(entry.getValue()));
+			}
+		}
+		
+		public List<IWidgetType<?>> lookupByDomain(String domain) {
+			List<IWidgetType<?>> ret = byDomain.get(domain);
+			return ret!=null?ret:Collections.<IWidgetType<?>>emptyList();
+		}
+		
+		public List<IWidgetType<?>> lookupByDomainAndTab(String domain, String tab) {
+			Map<String, List<IWidgetType<?>>> byTab = byDomainAndTab.get(domain);
+			List<IWidgetType<?>> ret = byTab!=null?byTab.get(tab):null;
+			if(ret==null) ret = withoutTabByDomain.get(domain);
+			return ret!=null?ret:Collections.<IWidgetType<?>>emptyList();
+		}
+	}
+	
+	private final TreeSet<IWidgetType<?>> widgetDescriptions = new TreeSet<IWidgetType<?>>(new Comparator<IWidgetType<?>>() {
 
 		@Override
 		public int compare(IWidgetType<?> o1, IWidgetType<?> o2) {
@@ -113,66 +211,67 @@ public class DefaultWidgetTypesRegistry implements IWidgetTypesRegistry {
 		}
 	});
 	
+	private volatile WidgetTypesIndex index;
+	
+	private WidgetTypesIndex getIndex() {
+		WidgetTypesIndex ret = index;
+		if(ret==null) {
+			synchronized (widgetDescriptions) {
+				ret = index;
+				if(ret==null) {
+					ret = new WidgetTypesIndex(widgetDescriptions);
+					index = ret;
+				}
+			}
+		}
+		return ret;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <T> List<IWidgetType<T>> filter(List<IWidgetType<?>> widgetTypes, Predicate<IWidgetType<T>> filter) {
+		if(filter==null) return (List)widgetTypes;
+		List<IWidgetType<T>> ret = new ArrayList<IWidgetType<T>>();
+		for(IWidgetType<?> widgetType : widgetTypes) {
+			if(filter.apply((IWidgetType<T>)widgetType)) ret.add((IWidgetType<T>)widgetType);
+		}
+		return Collections.unmodifiableList(ret);
+	}
+	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public <T> List<IWidgetType<?>> listWidgetTypes(Predicate<IWidgetType<T>> filter) {
-		Collection<IWidgetType<?>> ret = widgetDescriptions;
-		if(filter!=null) ret = Collections2.filter(ret, (Predicate)filter);
-		return Collections.unmodifiableList(new ArrayList<IWidgetType<?>>(ret));
+		return (List)filter(getIndex().all, filter);
 	}
 
 	@Override
 	public IWidgetType<?> lookupByTypeId(String id) {
 		if(id==null) return null;
-		for(IWidgetType<?> description : widgetDescriptions)
-		{
-			if(id.equals(description.getId())) return description;
-		}
-		return null;
+		return getIndex().byId.get(id);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T> List<IWidgetType<T>> lookupByDomain(String domain, Predicate<IWidgetType<T>> filter) {
-		List<IWidgetType<T>> ret = new ArrayList<IWidgetType<T>>();
-		for(IWidgetType<?> description : widgetDescriptions)
-		{
-			if(domain.equals(description.getDomain())
-					&& (filter==null || filter.apply((IWidgetType<T>)description))) ret.add((IWidgetType<T>)description);
-		}
-		return Collections.unmodifiableList(ret);
+		return filter(getIndex().lookupByDomain(domain), filter);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T> List<IWidgetType<T>> lookupByDomainAndTab(
 			String domain, String tab, Predicate<IWidgetType<T>> filter) {
-		List<IWidgetType<T>> ret = new ArrayList<IWidgetType<T>>();
-		for(IWidgetType<?> description : widgetDescriptions)
-		{
-			String defaultDomain = description.getDomain();
-			String defaultTab = description.getTab();
-			if(domain.equals(defaultDomain)
-					&& (Strings.isEmpty(defaultTab) || tab.equals(defaultTab))
-					&& (filter==null || filter.apply((IWidgetType<T>)description))) ret.add((IWidgetType<T>)description);
-		}
-		return Collections.unmodifiableList(ret);
+		return filter(getIndex().lookupByDomainAndTab(domain, tab), filter);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public IWidgetType<?> lookupByWidgetClass( Class<? extends AbstractWidget<?>> widgetClass) {
 		if(widgetClass==null) return null;
-		for(IWidgetType<?> description : widgetDescriptions)
-		{
-			if(widgetClass.equals(description.getWidgetClass())) return description;
-		}
-		return null;
+		return getIndex().byWidgetClass.get(widgetClass);
 	}
 
 	@Override
 	public IWidgetTypesRegistry register(IWidgetType<?> description) {
-		widgetDescriptions.add(description);
+		synchronized (widgetDescriptions) {
+			widgetDescriptions.add(description);
+			index = null;
+		}
 		return this;
 	}
 
@@ -0,0 +1,76 @@
+package org.orienteer.core.widget;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.ResourceModel;
+import org.orienteer.core.component.FAIcon;
+import org.orienteer.core.component.FAIconType;
+import org.orienteer.core.module.OWidgetsModule;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Lightweight placeholder for a widget which should be loaded lazily.
+ * Actual widget is created by AJAX request after rendering of a page and replaces this placeholder.
+ * Widget is loaded lazily if {@link OWidgetsModule#OPROPERTY_LAZY} is set for the widget document.
+ *
+ * @param <T> the type of main data object linked to this widget
+ */
+public class LazyWidget<T> extends AbstractWidget<T> {
+	
+	private final String typeId;
+	
+	public LazyWidget(String id, IModel<T> model, IModel<ODocument> widgetDocumentModel, String typeId) {
+		super(id, model, widgetDocumentModel);
+		this.typeId = typeId;
+		add(new AbstractDefaultAjaxBehavior() {
+			
+			@Override
+			protected void respond(AjaxRequestTarget target) {
+				Component widget = loadWidget();
+				if(widget!=null) target.add(widget);
+			}
+			
+			@Override
+			public void renderHead(Component component, IHeaderResponse response) {
+				super.renderHead(component, response);
+				response.render(OnDomReadyHeaderItem.forScript(getCallbackScript()));
+			}
+		});
+	}
+	
+	/**
+	 * Create actual widget and replace this placeholder by it
+	 * @return created widget or null if this placeholder is not a part of a dashboard anymore
+	 */
+	@SuppressWarnings("unchecked")
+	public AbstractWidget<T> loadWidget() {
+		if(getParent()==null) return null;
+		DashboardPanel<T> dashboard = getDashboardPanel();
+		IWidgetType<T> type = (IWidgetType<T>) dashboard.widgetTypesRegistry.lookupByTypeId(typeId);
+		AbstractWidget<T> widget = type!=null?type.instanciate(getId(), getModel(), getWidgetDocument())
+											 :new NotFoundWidget<T>(getId(), getModel(), getWidgetDocumentModel());
+		widget.setMarkupId(getMarkupId());
+		replaceWith(widget);
+		return widget;
+	}
+	
+	public String getTypeId() {
+		return typeId;
+	}
+
+	@Override
+	protected FAIcon newIcon(String id) {
+		return new FAIcon(id, FAIconType.spinner);
+	}
+
+	@Override
+	protected IModel<String> getTitleModel() {
+		return new ResourceModel("widget.loading");
+	}
+
+}
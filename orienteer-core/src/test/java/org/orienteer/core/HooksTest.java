@@ -3,12 +3,14 @@ package org.orienteer.core;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Provider;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.hook.CalculablePropertiesHook;
 import org.orienteer.core.hook.CallbackHook;
 import org.orienteer.junit.OrienteerTestRunner;
 
@@ -19,12 +21,16 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.hook.ORecordHook;
 import com.orientechnologies.orient.core.hook.ORecordHook.TYPE;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 
 @RunWith(OrienteerTestRunner.class)
 @Singleton
@@ -93,6 +99,76 @@ public class HooksTest
 		}
 	}
 	
+	@Test
+	public void testCalculableHookBatch() throws Exception
+	{
+		assertTrue(OrientDbWebSession.get().signIn("admin", "admin"));
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		OSchema schema = db.getMetadata().getSchema();
+		
+		assertFalse(db.isClosed());
+		db.commit();
+		if(schema.existsClass(TEST_CLASS_A)) schema.dropClass(TEST_CLASS_A);
+		OClass oClass = schema.createClass(TEST_CLASS_A);
+		try
+		{
+			oClass.createProperty("a", OType.INTEGER);
+			oClass.createProperty("b", OType.INTEGER);
+			OProperty cProperty = oClass.createProperty("c", OType.INTEGER);
+			OProperty dProperty = oClass.createProperty("d", OType.INTEGER);
+			CustomAttributes.CALCULABLE.setValue(cProperty, true);
+			CustomAttributes.CALCULABLE.setValue(dProperty, true);
+			CustomAttributes.CALC_SCRIPT.setValue(cProperty, "select sum(a, b) as value from TestClassA where @rid = ?");
+			CustomAttributes.CALC_SCRIPT.setValue(dProperty, "sum(a, b)");
+			OProperty eProperty = oClass.createProperty("e", OType.LONG);
+			CustomAttributes.CALCULABLE.setValue(eProperty, true);
+			CustomAttributes.CALC_SCRIPT.setValue(eProperty, "select count(*) as value from TestClassA where @rid <> ?");
+			
+			for(int i=0; i<5; i++)
+			{
+				ODocument doc = new ODocument(oClass);
+				doc.field("a", i);
+				doc.field("b", i);
+				doc.save();
+			}
+			List<ODocument> docs;
+			CalculablePropertiesHook.startBatch();
+			try
+			{
+				docs = db.query(new OSQLSynchQuery<ODocument>("select from "+TEST_CLASS_A));
+			}
+			finally
+			{
+				CalculablePropertiesHook.finishBatch();
+			}
+			assertEquals(5, docs.size());
+			for(ODocument doc : docs)
+			{
+				int a = doc.field("a");
+				assertEquals(a*2, doc.field("c"));
+				assertEquals(a*2, doc.field("d"));
+				assertEquals(4, ((Number)doc.field("e")).intValue());
+			}
+			//Values calculated in the request should be forgotten after creation of a document
+			ODocument newDoc = new ODocument(oClass);
+			newDoc.field("a", 5);
+			newDoc.field("b", 5);
+			newDoc.save();
+			docs = db.query(new OSQLSynchQuery<ODocument>("select from "+TEST_CLASS_A));
+			assertEquals(6, docs.size());
+			for(ODocument doc : docs)
+			{
+				int a = doc.field("a");
+				assertEquals(a*2, doc.field("c"));
+				assertEquals(5, ((Number)doc.field("e")).intValue());
+			}
+		} finally
+		{
+			schema.dropClass(TEST_CLASS_A);
+			OrientDbWebSession.get().signOut();
+		}
+	}
+	
 	@Test
 	public void testReferencesHook() throws Exception
 	{
@@ -288,6 +364,73 @@ public class HooksTest
 		}
 	}
 	
+	@Test
+	public void testReferencesHookManyLinksInTransaction() throws Exception
+	{
+		assertTrue(OrientDbWebSession.get().signIn("admin", "admin"));
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		OSchema schema = db.getMetadata().getSchema();
+		
+		assertFalse(db.isClosed());
+		db.commit();
+		if(schema.existsClass(TEST_CLASS_C)) schema.dropClass(TEST_CLASS_C);
+		OClass classC = schema.createClass(TEST_CLASS_C);
+		try
+		{
+			OProperty parent = classC.createProperty("parent", OType.LINK);
+			OProperty child = classC.createProperty("child", OType.LINKLIST);
+			CustomAttributes.PROP_INVERSE.setValue(parent, child);
+			CustomAttributes.PROP_INVERSE.setValue(child, parent);
+			
+			ODocument root = new ODocument(classC).save();
+			final ORID rootRid = root.getIdentity();
+			final AtomicInteger rootSaves = new AtomicInteger();
+			ORecordHook countingHook = new ODocumentHookAbstract(db) {
+				
+				@Override
+				public RESULT onRecordBeforeUpdate(ODocument iDocument) {
+					if(rootRid.equals(iDocument.getIdentity())) rootSaves.incrementAndGet();
+					return RESULT.RECORD_NOT_CHANGED;
+				}
+				
+				@Override
+				public DISTRIBUTED_EXECUTION_MODE getDistributedExecutionMode() {
+					return DISTRIBUTED_EXECUTION_MODE.BOTH;
+				}
+			};
+			db.registerHook(countingHook);
+			try
+			{
+				db.begin();
+				for(int i=0; i<20; i++)
+				{
+					ODocument childDoc = new ODocument(classC);
+					childDoc.field("parent", root);
+					childDoc.save();
+				}
+				db.commit();
+			} finally
+			{
+				db.unregisterHook(countingHook);
+			}
+			//Inverse links of the whole transaction are merged into a single save of the root
+			assertEquals(1, rootSaves.get());
+			root.reload();
+			List<ODocument> childs = root.field("child");
+			assertNotNull(childs);
+			assertEquals(20, childs.size());
+			for(ODocument childDoc : childs)
+			{
+				assertEquals(root, childDoc.field("parent"));
+			}
+		} finally
+		{
+			if(db.getTransaction().isActive()) db.commit();
+			schema.dropClass(TEST_CLASS_C);
+			OrientDbWebSession.get().signOut();
+		}
+	}
+	
 	private static class TestCallback implements CallbackHook.ICallback {
 		
 		@Override
@@ -0,0 +1,137 @@
+package org.orienteer.core.hook;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.orienteer.core.CustomAttributes;
+import org.orienteer.core.OrienteerWebApplication;
+import org.orienteer.junit.OrienteerTestRunner;
+
+import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
+
+import com.google.inject.Singleton;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@RunWith(OrienteerTestRunner.class)
+@Singleton
+public class MaterializationQueueTest
+{
+	private static final String TEST_CLASS = "TestClassMaterialization";
+	private static final String TEST_CLASS_NULL = "TestClassMaterializationNull";
+	private static final long TIMEOUT_MS = 10*1000;
+
+	@Test
+	public void testEnqueueOnCommit() throws Exception
+	{
+		assertTrue(OrientDbWebSession.get().signIn("admin", "admin"));
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		OSchema schema = db.getMetadata().getSchema();
+		db.commit();
+		if(schema.existsClass(TEST_CLASS)) schema.dropClass(TEST_CLASS);
+		OClass oClass = schema.createClass(TEST_CLASS);
+		//Delay is big enough to check pending documents before draining
+		MaterializationQueue queue = new MaterializationQueue(60*60*1000);
+		String url = db.getURL();
+		try
+		{
+			//No transaction: enqueued right away
+			ODocument doc1 = new ODocument(oClass).save();
+			queue.enqueue(db, doc1.getIdentity());
+			assertTrue(queue.getPending(url).contains(doc1.getIdentity()));
+
+			//Rollback should discard enqueued documents
+			ODocument doc2 = new ODocument(oClass).save();
+			db.begin();
+			doc2.field("a", 1);
+			doc2.save();
+			queue.enqueue(db, doc2.getIdentity());
+			assertFalse(queue.getPending(url).contains(doc2.getIdentity()));
+			db.rollback();
+			assertFalse(queue.getPending(url).contains(doc2.getIdentity()));
+
+			//Documents created in a transaction are enqueued with identity assigned on commit
+			db.begin();
+			ODocument doc3 = new ODocument(oClass);
+			doc3.save();
+			queue.enqueue(db, doc3.getIdentity());
+			db.commit();
+			assertTrue(doc3.getIdentity().isPersistent());
+			Set<ORID> pending = queue.getPending(url);
+			assertTrue(pending.contains(doc3.getIdentity()));
+			assertEquals(2, pending.size());
+
+			//Documents are kept per database
+			ORID otherRid = new ORecordId(doc1.getIdentity().getClusterId(), doc1.getIdentity().getClusterPosition());
+			queue.enqueue("memory:other", otherRid);
+			assertEquals(1, queue.getPending("memory:other").size());
+			assertEquals(2, queue.getPending(url).size());
+		} finally
+		{
+			queue.shutdown();
+			if(db.getTransaction().isActive()) db.rollback();
+			schema.dropClass(TEST_CLASS);
+			OrientDbWebSession.get().signOut();
+		}
+		assertTrue(queue.getPending(url).isEmpty());
+		queue.enqueue(url, new ORecordId(1, 1));
+		assertTrue(queue.getPending(url).isEmpty());
+	}
+
+	@Test
+	public void testNullMaterializedOnce() throws Exception
+	{
+		assertTrue(OrientDbWebSession.get().signIn("admin", "admin"));
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		OSchema schema = db.getMetadata().getSchema();
+		db.commit();
+		if(schema.existsClass(TEST_CLASS_NULL)) schema.dropClass(TEST_CLASS_NULL);
+		OClass oClass = schema.createClass(TEST_CLASS_NULL);
+		MaterializationQueue queue = OrienteerWebApplication.lookupApplication().getServiceInstance(MaterializationQueue.class);
+		String url = db.getURL();
+		try
+		{
+			oClass.createProperty("a", OType.INTEGER);
+			OProperty mProperty = oClass.createProperty("m", OType.INTEGER);
+			CustomAttributes.CALCULABLE.setValue(mProperty, true);
+			CustomAttributes.CALC_MATERIALIZED.setValue(mProperty, true);
+			//"a" is never set, so the script yields null
+			CustomAttributes.CALC_SCRIPT.setValue(mProperty, "select a as value from "+TEST_CLASS_NULL+" where @rid = ?");
+			ORID rid = new ODocument(oClass).save().getIdentity();
+
+			//Wait till null value is stored and there is nothing left to recalculate
+			long deadline = System.currentTimeMillis()+TIMEOUT_MS;
+			ODocument doc;
+			do
+			{
+				assertTrue("Materialized value wasn't stored", System.currentTimeMillis()<deadline);
+				Thread.sleep(100);
+				db.getLocalCache().clear();
+				doc = db.load(rid);
+			} while(!doc.containsField("m") || queue.getPending(url).contains(rid));
+			assertNull(doc.field("m"));
+
+			//Stored null value should not trigger recalculation on reads
+			for(int i=0; i<2; i++)
+			{
+				db.getLocalCache().clear();
+				doc = db.load(rid);
+				assertTrue(doc.containsField("m"));
+				assertFalse(queue.getPending(url).contains(rid));
+			}
+		} finally
+		{
+			schema.dropClass(TEST_CLASS_NULL);
+			OrientDbWebSession.get().signOut();
+		}
+	}
+}
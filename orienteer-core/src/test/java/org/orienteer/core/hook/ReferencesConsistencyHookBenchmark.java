@@ -0,0 +1,178 @@
+package org.orienteer.core.hook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.orienteer.core.CustomAttributes;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * JMH benchmark for {@link ReferencesConsistencyHook} overhead on chains of linked documents.
+ * Documents are created once per iteration and every invocation leaves them in the same state.
+ * It's not executed by surefire: run {@link #main(String[])} from test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReferencesConsistencyHookBenchmark
+{
+	private static final String NODE_CLASS = "BenchmarkNode";
+	
+	@Param({"10", "100", "1000"})
+	public int nodes;
+	
+	private ODatabaseDocumentTx db;
+	private OClass nodeClass;
+	private List<ODocument> chain;
+	private ODocument[] guardDocs;
+	private ReentrancyGuard guard;
+	
+	@Setup(Level.Trial)
+	public void setUpDatabase()
+	{
+		db = new ODatabaseDocumentTx("memory:"+NODE_CLASS+System.nanoTime());
+		db.create();
+		db.registerHook(new ReferencesConsistencyHook(db));
+		nodeClass = db.getMetadata().getSchema().createClass(NODE_CLASS);
+		OProperty parent = nodeClass.createProperty("parent", OType.LINK, nodeClass);
+		OProperty childrenProperty = nodeClass.createProperty("children", OType.LINKLIST, nodeClass);
+		CustomAttributes.PROP_INVERSE.setValue(parent, childrenProperty);
+		CustomAttributes.PROP_INVERSE.setValue(childrenProperty, parent);
+		
+		guard = new ReentrancyGuard();
+		guardDocs = new ODocument[nodes];
+		for(int i=0; i<nodes; i++)
+		{
+			guardDocs[i] = new ODocument(new ORecordId(9, i));
+		}
+	}
+	
+	/**
+	 * Nodes of a chain are created once per iteration: every benchmark leaves them unlinked
+	 */
+	@Setup(Level.Iteration)
+	public void setUpChain()
+	{
+		db.activateOnCurrentThread();
+		chain = new ArrayList<ODocument>(nodes);
+		for(int i=0; i<nodes; i++)
+		{
+			chain.add(new ODocument(NODE_CLASS).save());
+		}
+	}
+	
+	@TearDown(Level.Iteration)
+	public void tearDownChain() throws IOException
+	{
+		db.activateOnCurrentThread();
+		chain = null;
+		nodeClass.truncate();
+		db.getLocalCache().clear();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDownDatabase()
+	{
+		db.activateOnCurrentThread();
+		db.drop();
+	}
+	
+	/**
+	 * Every node gets the previous one as a parent: children of the previous node are updated by the hook,
+	 * so every node of the chain is both source and target of inverse links. Chain is unlinked back in the same way
+	 */
+	@Benchmark
+	public ODocument linkChainByParent()
+	{
+		for(int i=1; i<nodes; i++)
+		{
+			ODocument node = chain.get(i);
+			node.field("parent", chain.get(i-1));
+			node.save();
+		}
+		for(int i=nodes-1; i>0; i--)
+		{
+			ODocument node = chain.get(i);
+			node.field("parent", (Object)null);
+			node.save();
+		}
+		return chain.get(0);
+	}
+	
+	/**
+	 * Every node gets the next one as a child: parent of the next node is updated by the hook,
+	 * so every node of the chain is both source and target of inverse links. Chain is unlinked back in the same way
+	 */
+	@Benchmark
+	public ODocument linkChainByChildren()
+	{
+		for(int i=0; i<nodes-1; i++)
+		{
+			ODocument node = chain.get(i);
+			List<ODocument> children = new ArrayList<ODocument>(1);
+			children.add(chain.get(i+1));
+			node.field("children", children);
+			node.save();
+		}
+		for(int i=nodes-2; i>=0; i--)
+		{
+			ODocument node = chain.get(i);
+			node.field("children", new ArrayList<ODocument>());
+			node.save();
+		}
+		return chain.get(0);
+	}
+	
+	/**
+	 * Nested cascade of the specified depth: cost of the guard itself
+	 */
+	@Benchmark
+	public int nestedGuard()
+	{
+		int entered = 0;
+		for(int i=0; i<nodes; i++)
+		{
+			if(guard.enter(guardDocs[i])) entered++;
+			if(guard.contains(guardDocs[nodes-1-i])) entered++;
+		}
+		for(int i=nodes-1; i>=0; i--)
+		{
+			guard.exit(guardDocs[i]);
+		}
+		return entered;
+	}
+	
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder()
+						.include(ReferencesConsistencyHookBenchmark.class.getSimpleName())
+						.build()).run();
+	}
+}
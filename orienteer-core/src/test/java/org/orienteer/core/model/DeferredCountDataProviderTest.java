@@ -0,0 +1,173 @@
+package org.orienteer.core.model;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class DeferredCountDataProviderTest
+{
+	private static class ListDataProvider extends SortableDataProvider<Integer, String> implements IDeferredSizeAware
+	{
+		private static final long serialVersionUID = 1L;
+		private final List<Integer> list = new ArrayList<Integer>();
+		private final boolean deferrable;
+		private final String key;
+		private int sizeCalls = 0;
+
+		public ListDataProvider(int size, boolean deferrable, String key)
+		{
+			for(int i=0; i<size; i++) list.add(i);
+			this.deferrable = deferrable;
+			this.key = key;
+		}
+
+		@Override
+		public Iterator<? extends Integer> iterator(long first, long count) {
+			int from = (int)Math.min(first, list.size());
+			int to = (int)Math.min(first+count, list.size());
+			return list.subList(from, to).iterator();
+		}
+
+		@Override
+		public long size() {
+			sizeCalls++;
+			return list.size();
+		}
+
+		@Override
+		public IModel<Integer> model(Integer object) {
+			return Model.of(object);
+		}
+
+		@Override
+		public boolean isSizeDeferrable() {
+			return deferrable;
+		}
+
+		@Override
+		public Serializable getSizeKey() {
+			return key;
+		}
+	}
+
+	private static DeferredCountDataProvider<Integer, String> wrap(ListDataProvider provider, long ttl)
+	{
+		return new DeferredCountDataProvider<Integer, String>(provider, ttl);
+	}
+
+	@Test
+	public void testIncompletePageIsAppliedOnDetach() throws Exception
+	{
+		ListDataProvider list = new ListDataProvider(5, true, null);
+		DeferredCountDataProvider<Integer, String> provider = wrap(list, 60000);
+		assertTrue(provider.isDeferred());
+		assertEquals(DeferredCountDataProvider.UNKNOWN_SIZE, provider.size());
+		assertEquals(5, Lists.newArrayList(provider.iterator(0, 20)).size());
+		//Size should stay the same till the end of request
+		assertFalse(provider.isSizeKnown());
+		assertEquals(DeferredCountDataProvider.UNKNOWN_SIZE, provider.size());
+		provider.detach();
+		assertTrue(provider.isSizeKnown());
+		assertEquals(5, provider.size());
+		assertEquals(0, list.sizeCalls);
+	}
+
+	@Test
+	public void testEmptyPage() throws Exception
+	{
+		ListDataProvider list = new ListDataProvider(0, true, null);
+		DeferredCountDataProvider<Integer, String> provider = wrap(list, 60000);
+		assertFalse(provider.iterator(0, 20).hasNext());
+		assertFalse(provider.isSizeKnown());
+		provider.detach();
+		assertTrue(provider.isSizeKnown());
+		assertEquals(0, provider.size());
+		//Empty page after the end doesn't tell anything
+		list = new ListDataProvider(10, true, null);
+		provider = wrap(list, 60000);
+		assertFalse(provider.iterator(20, 20).hasNext());
+		provider.detach();
+		assertFalse(provider.isSizeKnown());
+	}
+
+	@Test
+	public void testCalculateSize() throws Exception
+	{
+		ListDataProvider list = new ListDataProvider(50, true, null);
+		DeferredCountDataProvider<Integer, String> provider = wrap(list, 60000);
+		assertEquals(20, Lists.newArrayList(provider.iterator(0, 20)).size());
+		provider.detach();
+		assertFalse(provider.isSizeKnown());
+		assertEquals(50, provider.calculateSize());
+		assertTrue(provider.isSizeKnown());
+		assertEquals(50, provider.size());
+		assertEquals(1, list.sizeCalls);
+		provider.resetSize();
+		assertFalse(provider.isSizeKnown());
+	}
+
+	@Test
+	public void testExpiration() throws Exception
+	{
+		ListDataProvider list = new ListDataProvider(50, true, null);
+		DeferredCountDataProvider<Integer, String> provider = wrap(list, 10);
+		provider.calculateSize();
+		provider.detach();
+		Thread.sleep(50);
+		assertFalse(provider.isSizeKnown());
+		assertEquals(DeferredCountDataProvider.UNKNOWN_SIZE, provider.size());
+	}
+
+	@Test
+	public void testNotDeferred() throws Exception
+	{
+		ListDataProvider list = new ListDataProvider(50, false, null);
+		DeferredCountDataProvider<Integer, String> provider = wrap(list, 60000);
+		assertFalse(provider.isDeferred());
+		assertTrue(provider.isSizeKnown());
+		assertEquals(50, provider.size());
+
+		provider = wrap(new ListDataProvider(50, true, null), 0);
+		assertFalse(provider.isDeferred());
+		assertEquals(50, provider.size());
+	}
+
+	@Test
+	public void testSharedSize() throws Exception
+	{
+		String key = UUID.randomUUID().toString();
+		ListDataProvider list1 = new ListDataProvider(50, true, key);
+		ListDataProvider list2 = new ListDataProvider(50, true, key);
+		ListDataProvider other = new ListDataProvider(50, true, key+"-other");
+		DeferredCountDataProvider<Integer, String> provider1 = wrap(list1, 60000);
+		DeferredCountDataProvider<Integer, String> provider2 = wrap(list2, 60000);
+		DeferredCountDataProvider<Integer, String> otherProvider = wrap(other, 60000);
+		provider1.calculateSize();
+		assertTrue(provider2.isSizeKnown());
+		assertEquals(50, provider2.size());
+		assertEquals(0, list2.sizeCalls);
+		assertFalse(otherProvider.isSizeKnown());
+
+		provider1.resetSize();
+		DeferredCountDataProvider<Integer, String> provider3 = wrap(new ListDataProvider(50, true, key), 60000);
+		assertFalse(provider3.isSizeKnown());
+
+		//Key from a model takes precedence
+		DeferredCountDataProvider<Integer, String> provider4 = wrap(new ListDataProvider(50, true, null), 60000);
+		provider4.setSizeKeyModel(Model.of(key));
+		provider1.calculateSize();
+		assertTrue(provider4.isSizeKnown());
+		assertEquals(50, provider4.size());
+	}
+}
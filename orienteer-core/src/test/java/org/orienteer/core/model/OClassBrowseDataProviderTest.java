@@ -0,0 +1,92 @@
+package org.orienteer.core.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.orienteer.junit.OrienteerTestRunner;
+
+import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
+
+import com.google.inject.Singleton;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@RunWith(OrienteerTestRunner.class)
+@Singleton
+public class OClassBrowseDataProviderTest
+{
+	private static final String TEST_CLASS = "TestClassBrowse";
+	private static final int PAGE = 10;
+
+	private static List<ORID> page(OClassBrowseDataProvider provider, long first)
+	{
+		List<ORID> ret = new ArrayList<ORID>();
+		Iterator<? extends ODocument> it = provider.iterator(first, PAGE);
+		while(it.hasNext()) ret.add(it.next().getIdentity());
+		provider.detach();
+		return ret;
+	}
+
+	private static List<ORID> expectedPage(ODatabaseDocument db, long first)
+	{
+		List<ORID> ret = new ArrayList<ORID>();
+		List<ODocument> docs = db.query(new OSQLSynchQuery<ODocument>("select from "+TEST_CLASS+" order by @rid asc skip "+first+" limit "+PAGE));
+		for(ODocument doc : docs) ret.add(doc.getIdentity());
+		return ret;
+	}
+
+	@Test
+	public void testPagingAcrossDelete() throws Exception
+	{
+		assertTrue(OrientDbWebSession.get().signIn("admin", "admin"));
+		ODatabaseDocument db = OrientDbWebSession.get().getDatabase();
+		OSchema schema = db.getMetadata().getSchema();
+		db.commit();
+		if(schema.existsClass(TEST_CLASS)) schema.dropClass(TEST_CLASS);
+		OClass oClass = schema.createClass(TEST_CLASS);
+		try
+		{
+			oClass.createProperty("num", OType.INTEGER);
+			List<ODocument> docs = new ArrayList<ODocument>();
+			for(int i=0; i<35; i++)
+			{
+				ODocument doc = new ODocument(oClass);
+				doc.field("num", i);
+				docs.add(doc.save());
+			}
+			OClassBrowseDataProvider provider = new OClassBrowseDataProvider(oClass);
+			assertEquals(35, provider.size());
+			provider.detach();
+			assertEquals(expectedPage(db, 0), page(provider, 0));
+			assertEquals(expectedPage(db, 10), page(provider, 10));
+			assertEquals(expectedPage(db, 20), page(provider, 20));
+
+			//Delete a document before known positions: all next positions are shifted
+			docs.get(5).delete();
+			assertEquals(expectedPage(db, 10), page(provider, 10));
+			assertEquals(expectedPage(db, 20), page(provider, 20));
+			assertEquals(expectedPage(db, 30), page(provider, 30));
+			assertEquals(4, page(provider, 30).size());
+
+			//Go back after deletion of a document from the last page
+			docs.get(32).delete();
+			assertEquals(expectedPage(db, 20), page(provider, 20));
+			assertEquals(expectedPage(db, 10), page(provider, 10));
+			assertEquals(33, provider.size());
+		} finally
+		{
+			schema.dropClass(TEST_CLASS);
+			OrientDbWebSession.get().signOut();
+		}
+	}
+}
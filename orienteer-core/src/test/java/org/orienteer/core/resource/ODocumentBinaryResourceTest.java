@@ -0,0 +1,107 @@
+package org.orienteer.core.resource;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ODocumentBinaryResourceTest
+{
+	private static void assertRange(long from, long to, long[] range)
+	{
+		assertNotNull(range);
+		assertArrayEquals(new long[]{from, to}, range);
+	}
+
+	private static void assertNotSatisfiable(long[] range)
+	{
+		assertNotNull(range);
+		assertEquals(0, range.length);
+	}
+
+	@Test
+	public void testNoRange() throws Exception
+	{
+		assertNull(ODocumentBinaryResource.parseRange(null, 1000));
+		assertNull(ODocumentBinaryResource.parseRange("items=0-10", 1000));
+		assertNull(ODocumentBinaryResource.parseRange("bytes=", 1000));
+		assertNull(ODocumentBinaryResource.parseRange("bytes=-", 1000));
+		assertNull(ODocumentBinaryResource.parseRange("bytes=a-b", 1000));
+		assertNull(ODocumentBinaryResource.parseRange("bytes=20-10", 1000));
+	}
+
+	@Test
+	public void testClosedRange() throws Exception
+	{
+		assertRange(0, 499, ODocumentBinaryResource.parseRange("bytes=0-499", 1000));
+		assertRange(500, 999, ODocumentBinaryResource.parseRange("bytes= 500 - 999 ", 1000));
+		//Last position is limited by length of a content
+		assertRange(500, 999, ODocumentBinaryResource.parseRange("bytes=500-5000", 1000));
+		assertRange(7, 7, ODocumentBinaryResource.parseRange("bytes=7-7", 1000));
+	}
+
+	@Test
+	public void testSuffixRange() throws Exception
+	{
+		assertRange(500, 999, ODocumentBinaryResource.parseRange("bytes=-500", 1000));
+		assertRange(999, 999, ODocumentBinaryResource.parseRange("bytes=-1", 1000));
+		assertRange(0, 999, ODocumentBinaryResource.parseRange("bytes=-5000", 1000));
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=-0", 1000));
+	}
+
+	@Test
+	public void testOpenEndedRange() throws Exception
+	{
+		assertRange(100, 999, ODocumentBinaryResource.parseRange("bytes=100-", 1000));
+		assertRange(0, 999, ODocumentBinaryResource.parseRange("bytes=0-", 1000));
+		assertRange(999, 999, ODocumentBinaryResource.parseRange("bytes=999-", 1000));
+	}
+
+	@Test
+	public void testRangeAfterEnd() throws Exception
+	{
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=1000-", 1000));
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=1000-1999", 1000));
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=5000-6000", 1000));
+	}
+
+	@Test
+	public void testMultipleRanges() throws Exception
+	{
+		//Whole content is sent for multiple ranges
+		assertNull(ODocumentBinaryResource.parseRange("bytes=0-10,20-30", 1000));
+		assertNull(ODocumentBinaryResource.parseRange("bytes=-10, 0-5", 1000));
+	}
+
+	@Test
+	public void testEmptyContent() throws Exception
+	{
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=0-", 0));
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=0-10", 0));
+		assertNotSatisfiable(ODocumentBinaryResource.parseRange("bytes=-10", 0));
+		assertNull(ODocumentBinaryResource.parseRange(null, 0));
+	}
+
+	@Test
+	public void testIfNoneMatch() throws Exception
+	{
+		String eTag = "\"9:1-3-data\"";
+		assertFalse(ODocumentBinaryResource.matchesETag(null, eTag));
+		assertFalse(ODocumentBinaryResource.matchesETag("", eTag));
+		assertTrue(ODocumentBinaryResource.matchesETag("\"9:1-3-data\"", eTag));
+		assertTrue(ODocumentBinaryResource.matchesETag("*", eTag));
+		assertTrue(ODocumentBinaryResource.matchesETag(" * ", eTag));
+		//Weak comparison
+		assertTrue(ODocumentBinaryResource.matchesETag("W/\"9:1-3-data\"", eTag));
+		//Lists of entity tags
+		assertTrue(ODocumentBinaryResource.matchesETag("\"9:1-2-data\", \"9:1-3-data\"", eTag));
+		assertTrue(ODocumentBinaryResource.matchesETag("W/\"x\",W/\"9:1-3-data\"", eTag));
+		assertTrue(ODocumentBinaryResource.matchesETag("\"a,b\", \"9:1-3-data\"", eTag));
+		assertFalse(ODocumentBinaryResource.matchesETag("\"9:1-2-data\", W/\"9:1-4-data\"", eTag));
+		//Partial matches
+		assertFalse(ODocumentBinaryResource.matchesETag("\"9:1-3-data-2\"", eTag));
+		assertFalse(ODocumentBinaryResource.matchesETag("\"9:1-3\"", eTag));
+		assertFalse(ODocumentBinaryResource.matchesETag("9:1-3-data", eTag));
+		//Malformed
+		assertFalse(ODocumentBinaryResource.matchesETag("\"9:1-3-data", eTag));
+	}
+}
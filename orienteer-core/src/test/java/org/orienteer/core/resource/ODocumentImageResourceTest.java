@@ -0,0 +1,19 @@
+package org.orienteer.core.resource;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ODocumentImageResourceTest
+{
+	@Test
+	public void testExtension() throws Exception
+	{
+		assertEquals(".png", ODocumentImageResource.getExtension("image/png"));
+		assertEquals(".jpg", ODocumentImageResource.getExtension("image/jpeg"));
+		assertEquals(".gif", ODocumentImageResource.getExtension("image/gif"));
+		assertNull(ODocumentImageResource.getExtension(null));
+		assertNull(ODocumentImageResource.getExtension(""));
+		assertNull(ODocumentImageResource.getExtension("not a mime type"));
+	}
+}
@@ -0,0 +1,72 @@
+package org.orienteer.core.service.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.orienteer.core.service.impl.FullTextSearchService.Hit;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+public class FullTextSearchServiceTest
+{
+	private static ORID rid(int position)
+	{
+		return new ORecordId(9, position);
+	}
+
+	@Test
+	public void testSplitIntoWords() throws Exception
+	{
+		assertEquals(Collections.emptyList(), FullTextSearchService.splitIntoWords(null));
+		assertEquals(Collections.emptyList(), FullTextSearchService.splitIntoWords(""));
+		assertEquals(Collections.emptyList(), FullTextSearchService.splitIntoWords("a an, to"));
+		assertEquals(Arrays.asList("Hello", "world"), FullTextSearchService.splitIntoWords("  Hello,world! "));
+		assertEquals(Arrays.asList("one", "two", "three"), FullTextSearchService.splitIntoWords("one:two;(three)|one"));
+		//Case is preserved, so words with different case are distinct
+		assertEquals(Arrays.asList("Word", "word"), FullTextSearchService.splitIntoWords("Word word \"word\""));
+		assertEquals(Arrays.asList("path", "file", "txt"), FullTextSearchService.splitIntoWords("path\\file.txt"));
+	}
+
+	@Test
+	public void testAllWordsRequired() throws Exception
+	{
+		List<Hit> hits = new ArrayList<Hit>();
+		hits.add(new Hit(rid(1), "A").match(0).match(1));
+		hits.add(new Hit(rid(2), "A").match(0).match(0));
+		hits.add(new Hit(rid(3), "B").match(1));
+		Map<String, List<ORID>> ranked = FullTextSearchService.rank(hits, 2);
+		assertEquals(Collections.singleton("A"), ranked.keySet());
+		assertEquals(Arrays.asList(rid(1)), ranked.get("A"));
+
+		ranked = FullTextSearchService.rank(hits, 1);
+		assertEquals(Arrays.asList(rid(1), rid(2)), ranked.get("A"));
+		assertEquals(Arrays.asList(rid(3)), ranked.get("B"));
+		assertTrue(FullTextSearchService.rank(Collections.<Hit>emptyList(), 1).isEmpty());
+	}
+
+	@Test
+	public void testRanking() throws Exception
+	{
+		List<Hit> hits = new ArrayList<Hit>();
+		hits.add(new Hit(rid(1), "B").match(0));
+		hits.add(new Hit(rid(2), "B").match(0).match(0).match(0));
+		hits.add(new Hit(rid(3), "B").match(0).match(0));
+		hits.add(new Hit(rid(4), "A").match(0));
+		hits.add(new Hit(rid(5), "C").match(0));
+		hits.add(new Hit(rid(6), "C").match(0).match(0));
+		hits.add(new Hit(rid(7), "D").match(0));
+		Map<String, List<ORID>> ranked = FullTextSearchService.rank(hits, 1);
+		//Classes with more hits go first, classes with the same number of hits are ordered by name
+		assertEquals(Arrays.asList("B", "C", "A", "D"), new ArrayList<String>(ranked.keySet()));
+		//Documents with more matches go first
+		assertEquals(Arrays.asList(rid(2), rid(3), rid(1)), ranked.get("B"));
+		assertEquals(Arrays.asList(rid(6), rid(5)), ranked.get("C"));
+	}
+}
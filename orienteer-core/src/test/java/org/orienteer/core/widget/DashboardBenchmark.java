@@ -0,0 +1,95 @@
+package org.orienteer.core.widget;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.tester.FormTester;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.orienteer.core.OrienteerWebApplication;
+import org.orienteer.core.web.BrowseOClassPage;
+import org.orienteer.core.web.LoginPage;
+import org.orienteer.core.web.ODocumentPage;
+import org.orienteer.core.web.schema.OClassPage;
+import org.orienteer.core.web.schema.SchemaPage;
+import org.orienteer.junit.StaticInjectorProvider;
+
+import ru.ydn.wicket.wicketorientdb.IOrientDbSettings;
+import ru.ydn.wicket.wicketorientdb.OrientDbWebSession;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * JMH benchmark for construction and rendering of pages with dashboards of 'document', 'class' and 'browse' domains.
+ * It's not executed by surefire: run {@link #main(String[])} from test classpath.
+ * To compare implementations run it on both revisions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class DashboardBenchmark
+{
+	private static final String CLASS_NAME = "OUser";
+
+	@Param({"document", "class", "browse"})
+	public String domain;
+
+	private WicketTester tester;
+	private ODocument document;
+	private PageParameters parameters;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		tester = StaticInjectorProvider.INSTANCE.get().getInstance(WicketTester.class);
+		tester.startPage(SchemaPage.class);
+		if(tester.getLastRenderedPage() instanceof LoginPage)
+		{
+			FormTester formTester = tester.newFormTester("signInPanel:signInForm");
+			IOrientDbSettings settings = ((OrienteerWebApplication)tester.getApplication()).getOrientDbSettings();
+			formTester.setValue("username", settings.getDBInstallatorUserName());
+			formTester.setValue("password", settings.getDBInstallatorUserPassword());
+			formTester.submit();
+		}
+		parameters = new PageParameters();
+		parameters.set("className", CLASS_NAME);
+		List<ODocument> docs = ((OrientDbWebSession)tester.getSession()).getDatabase()
+										.query(new OSQLSynchQuery<ODocument>("select from "+CLASS_NAME+" limit 1"));
+		document = docs.get(0);
+	}
+
+	@Benchmark
+	public Object renderDashboardPage()
+	{
+		if("document".equals(domain)) tester.startPage(new ODocumentPage(document));
+		else if("class".equals(domain)) tester.startPage(OClassPage.class, parameters);
+		else tester.startPage(BrowseOClassPage.class, parameters);
+		return tester.getLastRenderedPage();
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder()
+						.include(DashboardBenchmark.class.getSimpleName())
+						.build()).run();
+	}
+}